@@ -0,0 +1,27 @@
+package io.hulsbo.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Data Transfer Object for a change notification on the adventure event stream.
+ * Only aggregates that changed since the previous event are set; unchanged ones are null or empty.
+ */
+public class AdventureEventDTO {
+
+    public UUID id;
+    public long version;
+    public Double weight;
+    public Double energyDensity;
+    public Map<UUID, Double> mealWeights = new LinkedHashMap<>();
+    public Map<UUID, Double> ingredientWeights = new LinkedHashMap<>();
+    public List<UUID> removedMeals = new ArrayList<>();
+    public List<UUID> removedIngredients = new ArrayList<>();
+
+    // Default constructor (required by Jackson)
+    public AdventureEventDTO() {
+    }
+}
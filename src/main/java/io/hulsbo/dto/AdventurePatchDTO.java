@@ -0,0 +1,22 @@
+package io.hulsbo.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Body of a bulk adventure update (PATCH /adventures/{id}).
+ * Fields left null are not changed; all changes are propagated once.
+ */
+public class AdventurePatchDTO {
+
+    public String name;
+    public Integer days;
+    public List<String> addMeals;
+    public List<UUID> removeMeals;
+    public List<CrewMemberDTO> addCrew;
+    public List<UUID> removeCrew;
+
+    // Default constructor (required by Jackson)
+    public AdventurePatchDTO() {
+    }
+}
@@ -0,0 +1,19 @@
+package io.hulsbo.dto;
+
+/**
+ * Data Transfer Object for adding a crew member in a bulk adventure update.
+ */
+public class CrewMemberDTO {
+
+    public String name;
+    public int age;
+    public int height;
+    public int weight;
+    public String gender;
+    public String activity;
+    public String strategy;
+
+    // Default constructor (required by Jackson)
+    public CrewMemberDTO() {
+    }
+}
@@ -0,0 +1,22 @@
+package io.hulsbo.dto;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One entry of a bulk ingredient update (PATCH /meals/{id}/ingredients).
+ * Fields left null are not changed.
+ */
+public class IngredientChangeDTO {
+
+    public UUID ingredientId;
+    public Double weight;
+    public Map<String, Double> nutrients;
+    public String measurementUnit;
+    public Double pcsWeight;
+    public Double density;
+
+    // Default constructor (required by Jackson)
+    public IngredientChangeDTO() {
+    }
+}
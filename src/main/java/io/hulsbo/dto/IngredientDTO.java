@@ -0,0 +1,30 @@
+package io.hulsbo.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.hulsbo.util.model.MeasurementUnit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A catalog ingredient (GET/PUT /ingredients/{id}), with the same JSON fields as a serialized Ingredient.
+ * Unlike an Ingredient it is not registered in the Manager and does not propagate; a domain Ingredient is
+ * only created when a catalog ingredient is added to a meal.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class IngredientDTO {
+
+    public UUID id;
+    public String name;
+    public Map<String, Double> nutrientsMap = new LinkedHashMap<>();
+    public double energyDensity;
+    public MeasurementUnit measurementUnit = MeasurementUnit.GRAM;
+    public Double pcsWeight;
+    public Double density = 1.0;
+    public UUID createdByUserId;
+
+    // Default constructor (required by Jackson)
+    public IngredientDTO() {
+    }
+}
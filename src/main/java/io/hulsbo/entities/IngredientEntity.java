@@ -5,8 +5,13 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.math.BigDecimal;
 import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 @Entity
@@ -37,6 +42,11 @@ public class IngredientEntity extends PanacheEntityBase {
     @Column(name = "salt_ratio", nullable = false)
     public BigDecimal salt_ratio;
 
+    // Non-zero micronutrient ratios by nutrient key, see NutrientRegistry.
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "micronutrients", nullable = false)
+    public Map<String, Double> micronutrients = new HashMap<>();
+
     @Column(name = "density_g_ml")
     public BigDecimal density_g_ml;
     
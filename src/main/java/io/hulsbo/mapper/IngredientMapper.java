@@ -1,8 +1,11 @@
 package io.hulsbo.mapper;
 
+import io.hulsbo.dto.IngredientDTO;
 import io.hulsbo.entities.IngredientEntity;
 import io.hulsbo.model.Ingredient;
-import io.hulsbo.util.model.baseclass.NutrientsMap; // Import NutrientsMap
+import io.hulsbo.util.model.baseclass.FixedPoint;
+import io.hulsbo.util.model.baseclass.Nutrient;
+import io.hulsbo.util.model.baseclass.NutrientRegistry;
 import jakarta.enterprise.context.ApplicationScoped;
 
 import java.math.BigDecimal;
@@ -12,6 +15,8 @@ import java.util.Objects;
 
 @ApplicationScoped
 public class IngredientMapper {
+    // Decimals of the NUMERIC(5,4) nutrient ratio columns
+    private static final int RATIO_DECIMALS = 4;
 
     /**
      * Maps an IngredientEntity to an Ingredient domain object.
@@ -22,67 +27,35 @@ public class IngredientMapper {
      * @return The corresponding Ingredient domain object, or null if entity is null.
      */
     public Ingredient toDomain(IngredientEntity entity) {
-        if (entity == null) {
+        return toDomain(toDTO(entity));
+    }
+
+    /**
+     * Materializes a catalog ingredient as a registered Ingredient domain object with the catalog id,
+     * e.g. when it is added to a meal.
+     *
+     * @param source The catalog ingredient.
+     * @return The corresponding Ingredient domain object, or null if source is null.
+     */
+    public Ingredient toDomain(IngredientDTO source) {
+        if (source == null) {
             return null;
         }
 
-        Ingredient domain = new Ingredient(entity.id);
+        Ingredient domain = new Ingredient(source.id);
 
         // Set name
-        domain.setName(entity.name); // Use setter from BaseClass
-
-        // Set density
-		if (entity.density_g_ml != null) {
-			domain.setDensity(entity.density_g_ml.doubleValue());
-		}
-
-        // Set created_by_user_id
-		if (entity.created_by_user_id != null) {
-			domain.setCreatedByUserId(entity.created_by_user_id);
-		}
-
-        // set grams_per_pcs
-		if (entity.g_per_pcs != null) {
-			domain.setPcsWeight(entity.g_per_pcs.doubleValue());
-		}
-
-        // Set nutrients
-
-        // Create a map to hold nutrient updates
-        Map<String, Double> nutrientUpdates = new HashMap<>();
-
-        // Populate the map from the entity, converting BigDecimal to double
-        // Assumes entity fields are not null; add null checks if necessary
-        if (entity.protein_ratio != null) {
-             nutrientUpdates.put("protein", entity.protein_ratio.doubleValue());
-        }
-        if (entity.fat_ratio != null) {
-             nutrientUpdates.put("fat", entity.fat_ratio.doubleValue());
-        }
-        if (entity.carbs_ratio != null) {
-             nutrientUpdates.put("carbs", entity.carbs_ratio.doubleValue());
-        }
-         if (entity.fiber_and_ash_ratio != null) {
-            // TODO: "fiber" should perhaps be renamed to something more accurate yet still short.
-             nutrientUpdates.put("fiber", entity.fiber_and_ash_ratio.doubleValue());
-        }
-        if (entity.salt_ratio != null) {
-             nutrientUpdates.put("salt", entity.salt_ratio.doubleValue());
-        }
+        domain.setName(source.name); // Use setter from BaseClass
 
-        // Water takes up the remaining part, so it's 1 - sum(entity nutrients)
-        double waterRatio = 1.0 - nutrientUpdates.values().stream().mapToDouble(Double::doubleValue).sum();
-        nutrientUpdates.put("water", waterRatio);
-
-        // Ignore density if null (should default to water i.e. 1.0)
-        if (entity.density_g_ml != null) {
-            domain.setDensity(entity.density_g_ml.doubleValue());
-        }
+        // Set density (defaults to water i.e. 1.0), created_by_user_id and grams_per_pcs
+        domain.setDensity(source.density);
+        domain.setCreatedByUserId(source.createdByUserId);
+        domain.setPcsWeight(source.pcsWeight);
 
         // Set nutrients using the Ingredient's method, which handles validation
         // Consider adding try-catch if setNutrientRatios can throw exceptions
         // that shouldn't happen if DB constraints are valid.
-        domain.setNutrientRatios(nutrientUpdates);
+        domain.setNutrientRatios(source.nutrientsMap);
 
         // Normalize nutrient ratios and propagate changes
         domain.normalizeNutrientRatiosAndPropagate();
@@ -91,74 +64,186 @@ public class IngredientMapper {
     }
 
     /**
-     * Updates an existing IngredientEntity with data from an Ingredient domain object.
+     * Maps an IngredientEntity directly to an IngredientDTO, for catalog responses.
+     * Unlike {@link #toDomain(IngredientEntity)}, nothing is registered in the Manager or propagated.
+     *
+     * @param entity The IngredientEntity from the database.
+     * @return The corresponding IngredientDTO, or null if entity is null.
+     */
+    public IngredientDTO toDTO(IngredientEntity entity) {
+        if (entity == null) {
+            return null;
+        }
+
+        IngredientDTO dto = new IngredientDTO();
+        dto.id = entity.id;
+        dto.name = entity.name;
+        dto.createdByUserId = entity.created_by_user_id;
+        if (entity.density_g_ml != null) {
+            dto.density = entity.density_g_ml.doubleValue();
+        }
+        if (entity.g_per_pcs != null) {
+            dto.pcsWeight = entity.g_per_pcs.doubleValue();
+        }
+
+        // Same keys and order as a serialized NutrientsMap: every core nutrient, then non-zero micronutrients
+        Map<String, Double> nutrients = readNutrients(entity);
+        for (Nutrient nutrient : Nutrient.values()) {
+            dto.nutrientsMap.put(nutrient.getKey(), nutrients.getOrDefault(nutrient.getKey(), 0.0));
+        }
+        nutrients.forEach((key, value) -> {
+            if (Nutrient.fromKey(key) == null && value != 0.0) {
+                dto.nutrientsMap.put(key, value);
+            }
+        });
+        dto.energyDensity = Nutrient.energyDensity(dto.nutrientsMap.get(Nutrient.PROTEIN.getKey()),
+                dto.nutrientsMap.get(Nutrient.FAT.getKey()), dto.nutrientsMap.get(Nutrient.CARBS.getKey()));
+
+        return dto;
+    }
+
+    /**
+     * Updates an existing IngredientEntity with data from an IngredientDTO.
      * Does NOT update the ID.
      * Ignores density.
      *
-     * @param source The source Ingredient object containing updated data.
+     * @param source The source IngredientDTO containing updated data.
      * @param target The IngredientEntity to be updated (must not be null).
+     * @throws IllegalArgumentException if a nutrient key is invalid, a value is out of range, or the sum exceeds 100%.
      */
-    public void updateEntity(Ingredient source, IngredientEntity target) {
+    public void updateEntity(IngredientDTO source, IngredientEntity target) {
         Objects.requireNonNull(target, "Target IngredientEntity cannot be null");
         if (source == null) {
             return; // Nothing to update from
         }
 
         // Update name
-        if (source.getName() != null) {
-            target.name = source.getName();
+        if (source.name != null) {
+            target.name = source.name;
         }
 
-        // Get nutrients from the source domain object
-        NutrientsMap sourceMap = source.getNutrientsMap();
-
-        // Update entity fields, converting double to BigDecimal
-        target.protein_ratio = BigDecimal.valueOf(sourceMap.getOrDefault("protein", 0.0));
-        target.fat_ratio = BigDecimal.valueOf(sourceMap.getOrDefault("fat", 0.0));
-        target.carbs_ratio = BigDecimal.valueOf(sourceMap.getOrDefault("carbs", 0.0));
-        target.fiber_and_ash_ratio = BigDecimal.valueOf(sourceMap.getOrDefault("fiber", 0.0));
-        target.salt_ratio = BigDecimal.valueOf(sourceMap.getOrDefault("salt", 0.0));
-        // Water is 1 - sum(entity nutrients) so can't be set here
+        writeNutrients(source, target);
         // Density is taken as a field of Ingredient
-        // target.density_g_ml = BigDecimal.valueOf(source.getDensity());
+        // target.density_g_ml = BigDecimal.valueOf(source.density);
 
     }
 
     /**
-     * Maps an Ingredient domain object to a *new* IngredientEntity.
+     * Maps an IngredientDTO to a *new* IngredientEntity.
      * Used primarily for creating new database entries.
      * Does not map ID or density.
      *
-     * @param domain The Ingredient domain object.
-     * @return The corresponding IngredientEntity, or null if domain is null.
+     * @param source The IngredientDTO.
+     * @return The corresponding IngredientEntity, or null if source is null.
+     * @throws IllegalArgumentException if a nutrient key is invalid, a value is out of range, or the sum exceeds 100%.
      */
-    public IngredientEntity toEntity(Ingredient domain) {
-        if (domain == null) {
+    public IngredientEntity toEntity(IngredientDTO source) {
+        if (source == null) {
             return null;
         }
 
         IngredientEntity entity = new IngredientEntity();
 
         // Set name
-        entity.name = domain.getName();
-
-        // Get nutrients from the domain object
-        NutrientsMap domainMap = domain.getNutrientsMap();
-
-        // Set entity fields, converting double to BigDecimal
-        entity.protein_ratio = BigDecimal.valueOf(domainMap.getOrDefault("protein", 0.0));
-        entity.fat_ratio = BigDecimal.valueOf(domainMap.getOrDefault("fat", 0.0));
-        entity.carbs_ratio = BigDecimal.valueOf(domainMap.getOrDefault("carbs", 0.0));
-        entity.fiber_and_ash_ratio = BigDecimal.valueOf(domainMap.getOrDefault("fiber", 0.0));
-        entity.salt_ratio = BigDecimal.valueOf(domainMap.getOrDefault("salt", 0.0));
-        // Water is 1 - sum(entity nutrients) so can't be set here
-    
+        entity.name = source.name;
+
+        writeNutrients(source, entity);
         // Density is taken as a field of Ingredient
-        // entity.density_g_ml = BigDecimal.valueOf(domain.getDensity());
+        // entity.density_g_ml = BigDecimal.valueOf(source.density);
 
         // We do not set the ID here; it should be generated by the database.
 
         return entity;
     }
 
-} 
\ No newline at end of file
+    /**
+     * Validates the nutrients of a DTO and sets them on the entity, converting double to NUMERIC(5,4)
+     * decimals. Water is 1 - sum(entity nutrients) so can't be set here.
+     */
+    private static void writeNutrients(IngredientDTO source, IngredientEntity target) {
+        Map<String, Double> nutrients = source.nutrientsMap == null ? Map.of() : source.nutrientsMap;
+        double sum = 0.0;
+        Map<String, Double> micronutrients = new HashMap<>();
+        for (Map.Entry<String, Double> entry : nutrients.entrySet()) {
+            String key = entry.getKey();
+            Double value = entry.getValue();
+            int index = NutrientRegistry.indexOf(key);
+            if (index < 0) {
+                throw new IllegalArgumentException("Invalid nutrient key: " + key);
+            }
+            if (value == null || value < 0.0 || value > 1.0) {
+                throw new IllegalArgumentException("Invalid nutrient value for key '" + key + "': " + value + ". Must be between 0.0 and 1.0.");
+            }
+            if (NutrientRegistry.isMicronutrient(index)) {
+                if (value != 0.0) {
+                    micronutrients.put(key, value);
+                }
+            } else {
+                sum += value;
+            }
+        }
+        if (sum > 1.0 + 1e-9) {
+            throw new IllegalArgumentException(String.format("Nutrients exceed 100%%. Sum is %.1f%%.", sum * 100));
+        }
+
+        target.protein_ratio = toDecimal(nutrients.getOrDefault(Nutrient.PROTEIN.getKey(), 0.0));
+        target.fat_ratio = toDecimal(nutrients.getOrDefault(Nutrient.FAT.getKey(), 0.0));
+        target.carbs_ratio = toDecimal(nutrients.getOrDefault(Nutrient.CARBS.getKey(), 0.0));
+        target.fiber_and_ash_ratio = toDecimal(nutrients.getOrDefault(Nutrient.FIBER.getKey(), 0.0));
+        target.salt_ratio = toDecimal(nutrients.getOrDefault(Nutrient.SALT.getKey(), 0.0));
+        target.micronutrients = micronutrients;
+    }
+
+    /**
+     * Reads the nutrient ratios of a catalog entity: the core nutrients, water as the remainder, and the
+     * micronutrients (registered on the fly if the catalog introduces new ones).
+     */
+    private static Map<String, Double> readNutrients(IngredientEntity entity) {
+        // Create a map to hold nutrient updates
+        Map<String, Double> nutrientUpdates = new HashMap<>();
+
+        // Populate the map from the entity, converting the NUMERIC ratios to fixed-point units exactly
+        // Assumes entity fields are not null; add null checks if necessary
+        long sumOfUnits = 0;
+        sumOfUnits += putRatio(nutrientUpdates, "protein", entity.protein_ratio);
+        sumOfUnits += putRatio(nutrientUpdates, "fat", entity.fat_ratio);
+        sumOfUnits += putRatio(nutrientUpdates, "carbs", entity.carbs_ratio);
+        // TODO: "fiber" should perhaps be renamed to something more accurate yet still short.
+        sumOfUnits += putRatio(nutrientUpdates, "fiber", entity.fiber_and_ash_ratio);
+        sumOfUnits += putRatio(nutrientUpdates, "salt", entity.salt_ratio);
+
+        // Water takes up the remaining part, so it's 1 - sum(entity nutrients), exact in fixed point
+        nutrientUpdates.put("water", FixedPoint.toRatio(FixedPoint.ONE - sumOfUnits));
+
+        // Micronutrients are not part of the sum; ones the catalog introduces are registered on the fly
+        if (entity.micronutrients != null) {
+            entity.micronutrients.forEach((key, value) -> {
+                NutrientRegistry.register(key);
+                nutrientUpdates.put(key, value);
+            });
+        }
+
+        return nutrientUpdates;
+    }
+
+    /**
+     * Puts a nutrient ratio read from the catalog, if present.
+     *
+     * @return The ratio in {@link FixedPoint} units, 0 if absent.
+     */
+    private static long putRatio(Map<String, Double> nutrientUpdates, String nutrient, BigDecimal ratio) {
+        if (ratio == null) {
+            return 0;
+        }
+        long units = FixedPoint.toUnits(ratio);
+        nutrientUpdates.put(nutrient, FixedPoint.toRatio(units));
+        return units;
+    }
+
+    /**
+     * @return The ratio as a decimal with the scale of the NUMERIC(5,4) ratio columns.
+     */
+    private static BigDecimal toDecimal(double ratio) {
+        return FixedPoint.toDecimal(FixedPoint.toUnits(ratio), RATIO_DECIMALS);
+    }
+}
@@ -7,6 +7,8 @@ import java.util.UUID;
 import io.hulsbo.util.model.baseclass.ChildWrapper;
 import io.quarkus.logging.Log;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -33,6 +35,12 @@ public class Adventure extends BaseClass  {
 		}
 	}
 
+	@Override
+	protected void bumpVersion() {
+		super.bumpVersion();
+		Manager.adventuresChanged();
+	}
+
 	public void setMealAndIngredientWeights() {
 
 		Log.info("(Re)calculating meal and ingredient weights for adventure \"" + getName() + "\" with id " + getId());
@@ -85,7 +93,7 @@ public class Adventure extends BaseClass  {
 	 * @return UUID key of newChild
 	 */
 	public UUID putChild(Meal newMeal) {
-		double weightedValue = giveSpaceForAnotherEntry();
+		double weightedValue = averageChildWeight();
 		return super.putChild(newMeal, weightedValue, 0.0);
 	}
 
@@ -96,6 +104,8 @@ public class Adventure extends BaseClass  {
 		// NOTE: Registration in Manager is done in constructor.
 		setCrewDailyKcalNeed();
 
+		// The crew is serialized even if the weight comes out the same
+		stateChanged();
 		// Trigger update propagation
 		this.updateAndPropagate();
 	}
@@ -116,6 +126,8 @@ public class Adventure extends BaseClass  {
 			throw new IllegalArgumentException("Days must be one or more.");
 		}
 
+		// The days are serialized even if the weight comes out the same
+		stateChanged();
 		// Trigger update propagation
 		this.updateAndPropagate();
 	}
@@ -124,63 +136,66 @@ public class Adventure extends BaseClass  {
 		return days;
 	}
 
-	public void getInfo() {
-		System.out.println();
-		System.out.println("Summary " + "of " + getClass().getSimpleName() + " \"" + getName() + "\":");
-		System.out.println();
-		System.out.println("Crew members: ".toUpperCase());
+	@Override
+	protected String renderInfo() {
+		StringWriter buffer = new StringWriter();
+		PrintWriter out = new PrintWriter(buffer);
+		out.println();
+		out.println("Summary " + "of " + getClass().getSimpleName() + " \"" + getName() + "\":");
+		out.println();
+		out.println("Crew members: ".toUpperCase());
 		int i = 1;
 		for (CrewMember crewMember : crewMemberMap.values()) {
-			System.out.println();
-			System.out.printf("%25s %s %n", "Crew member " + i + ":", crewMember.getName());
-			System.out.printf("%25s %s %n", "Gender:", crewMember.getGender().toString().toLowerCase());
-			System.out.printf("%25s %d %n", "Age:", crewMember.getAge());
-			System.out.printf("%25s %s %n", "Activity level:", crewMember.getActivity().toString().toLowerCase());
-			System.out.printf("%25s %d KCal %n", "Daily KCal need:", crewMember.getDailyKCalNeed());
+			out.println();
+			out.printf("%25s %s %n", "Crew member " + i + ":", crewMember.getName());
+			out.printf("%25s %s %n", "Gender:", crewMember.getGender().toString().toLowerCase());
+			out.printf("%25s %d %n", "Age:", crewMember.getAge());
+			out.printf("%25s %s %n", "Activity level:", crewMember.getActivity().toString().toLowerCase());
+			out.printf("%25s %d KCal %n", "Daily KCal need:", crewMember.getDailyKCalNeed());
 
 			i++;
 		}
-		System.out.println();
-		System.out.printf("%25s %.0f KCal %n", "Daily KCal need crew:", crewDailyKcalNeed);
+		out.println();
+		out.printf("%25s %.0f KCal %n", "Daily KCal need crew:", crewDailyKcalNeed);
 
-		System.out.println();
+		out.println();
 
-		System.out.println("MEALS FOR " + days + " DAYS:");
-		System.out.println();
-		System.out.println();
+		out.println("MEALS FOR " + days + " DAYS:");
+		out.println();
+		out.println();
 		childMap.forEach((key, value) -> {
-			System.out.printf("%10s |", value.getChild().getName());
-			System.out.printf(" ratio: " + "%5.1f %%", childMap.get(key).getRatio() * 100);
+			out.printf("%10s |", value.getChild().getName());
+			out.printf(" ratio: " + "%5.1f %%", childMap.get(key).getRatio() * 100);
 			Set<String> nutrients = childMap.get(key).getChild().getNutrientsMap().keySet();
 			for (String nutrient : nutrients) {
-				System.out.printf(" | %s: %4.1f %%", nutrient,
+				out.printf(" | %s: %4.1f %%", nutrient,
 						childMap.get(key).getChild().getNutrientsMap().get(nutrient) * 100);
 			}
-			System.out.printf(" | calc. weight: " + "%4.2f kg", mealWeights.get(childMap.get(key).getChild().getId()));
-			System.out.println();
-			System.out.println();
+			out.printf(" | calc. weight: " + "%4.2f kg", mealWeights.get(childMap.get(key).getChild().getId()));
+			out.println();
+			out.println();
 			// For adventures, also sum each ingredient for each meal
 			Map<UUID, ChildWrapper> childMapIngredient = value.getChild().childMap;
 			childMapIngredient.forEach((childMapIngredientKey, childMapIngredientValue) -> {
-				System.out.printf("%15s |", childMapIngredientValue.getChild().getName());
-				System.out.printf(" ratio: " + "%5.1f %%",
+				out.printf("%15s |", childMapIngredientValue.getChild().getName());
+				out.printf(" ratio: " + "%5.1f %%",
 						childMapIngredient.get(childMapIngredientKey).getRatio() * 100);
 				Set<String> ingredientNutrients = childMapIngredient.get(childMapIngredientKey).getChild()
 						.getNutrientsMap().keySet();
 				for (String nutrient : ingredientNutrients) {
-					System.out.printf(" | %s: %4.1f %%", nutrient,
+					out.printf(" | %s: %4.1f %%", nutrient,
 							childMapIngredient.get(childMapIngredientKey).getChild().getNutrientsMap().get(nutrient)
 									* 100);
 				}
-				System.out.printf(" | calc. weight: " + "%4.2f kg",
+				out.printf(" | calc. weight: " + "%4.2f kg",
 						ingredientWeights.get(childMapIngredient.get(childMapIngredientKey).getChild().getId()));
-				System.out.println();
+				out.println();
 			});
-			System.out.println();
+			out.println();
 		});
 
 		// Summary
-		System.out.printf("%10s |", getClass().getSimpleName());
+		out.printf("%10s |", getClass().getSimpleName());
 
 		Set<UUID> children = childMap.keySet();
 		double sum = 0;
@@ -189,18 +204,20 @@ public class Adventure extends BaseClass  {
 			sum += childMap.get(id).getRatio();
 		}
 
-		System.out.printf(" ratio: " + "%5.1f %%", sum * 100);
+		out.printf(" ratio: " + "%5.1f %%", sum * 100);
 
 		Set<String> nutrients = getNutrientsMap().keySet();
 		for (String nutrient : nutrients) {
-			System.out.printf(" | %s: %4.1f %%", nutrient, getNutrientsMap().get(nutrient) * 100);
+			out.printf(" | %s: %4.1f %%", nutrient, getNutrientsMap().get(nutrient) * 100);
 		}
-		System.out.printf(" | calc. weight: " + "%4.2f kg", getWeight());
-		System.out.println();
-		System.out.println();
-		System.out.printf("Energy Density of " + getClass().getSimpleName() + ": %4.0f KCal/Kg %n", energyDensity);
-		System.out.println();
-		System.out.println("END OF SUMMARY");
+		out.printf(" | calc. weight: " + "%4.2f kg", getWeight());
+		out.println();
+		out.println();
+		out.printf("Energy Density of " + getClass().getSimpleName() + ": %4.0f KCal/Kg %n", energyDensity);
+		out.println();
+		out.println("END OF SUMMARY");
+		out.flush();
+		return buffer.toString();
 	}
 
 	// NOTE: Used in template.
@@ -223,6 +240,7 @@ public class Adventure extends BaseClass  {
 
 	// NOTE: Used in template.
 	public int getCrewDailyKcalNeed() {
+		ensureFresh();
 		return (int) crewDailyKcalNeed;
 	}
 
@@ -236,33 +254,28 @@ public class Adventure extends BaseClass  {
 
 	// NOTE: Used in template.
 	public Map<UUID, Double> getIngredientWeights() {
+		ensureFresh();
 		return ingredientWeights;
 	}
 
 	public void removeCrewMember(UUID id) {
-		crewMemberMap.remove(id);
+		if (crewMemberMap.remove(id) != null) {
+			Manager.removeCrewMember(id);
+		}
 		if (crewMemberMap.containsKey(id)) {
 			throw new IllegalArgumentException("Crew member with id " + id + " could not be removed from adventure.");
 		} else {
 			Log.info("Crew member with id " + id + " was successfully removed from adventure.");
 		}
 
+		// The crew is serialized even if the weight comes out the same
+		stateChanged();
 		// Trigger update propagation
 		this.updateAndPropagate();
 	}
 
-	// Override updateAndPropagate
-	@Override
-	public void updateAndPropagate() {
-		Log.infof("[Adventure ID: %s] Entering updateAndPropagate.", getId());
-		// Adventure-specific updates
-		this.setNutrientsMapAndWeights();
-		super.updateAndPropagate(); // Propagate upwards (though Adventure is usually the root)
-		Log.infof("[Adventure ID: %s] Exiting updateAndPropagate.", getId());
-	}
-
 	public double getTotalWeight() {
-		return weight;
+		return getWeight();
 	}
 
 	protected void setMealWeights() {
@@ -276,6 +289,7 @@ public class Adventure extends BaseClass  {
 
 	// NOTE: Used in template.
 	public Map<UUID, Double> getMealWeights() {
+		ensureFresh();
 		return mealWeights;
 	}
 }
@@ -2,73 +2,129 @@ package io.hulsbo.model;
 
 import java.util.UUID;
 import io.hulsbo.util.model.baseclass.ChildWrapper;
+import io.hulsbo.util.model.baseclass.ChildColumns;
+import io.hulsbo.util.model.baseclass.FixedPoint;
+import io.hulsbo.util.model.baseclass.Nutrient;
 import io.hulsbo.util.model.baseclass.NutrientsMap;
+import io.hulsbo.util.model.baseclass.WeightTotal;
 import io.quarkus.logging.Log;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public abstract class BaseClass {
     protected final NutrientsMap nutrientsMap = new NutrientsMap();
-    protected final Map<UUID, ChildWrapper> childMap = new LinkedHashMap<>();
-    protected final Map<String, UUID> nameIndex = new HashMap<>();
-    protected final Set<UUID> parents = new HashSet<>(); // Parent tracking
+    // Leaves (Ingredients) never have children and share immutable empty child structures.
+    protected final Map<UUID, ChildWrapper> childMap;
+    // childMap is guarded by ModelLocks; parents and nameIndex are also read outside the locks of this object.
+    protected final NameIndex nameIndex;
+    protected final Set<BaseClass> parents = new ParentSet(); // Parent tracking, by handle
     protected double weight;
     private final UUID id;
     protected double energyDensity;
     private String name;
-    protected final OffsetDateTime creationTime;
+    private final long creationEpochNanos;
+    private volatile boolean dirty; // Set in lazy propagation mode when aggregates are stale
+    private volatile long version; // Bumped whenever this object or anything below it changes
+    private static final AtomicLongFieldUpdater<BaseClass> VERSION = AtomicLongFieldUpdater.newUpdater(BaseClass.class, "version");
+    private static final ZoneOffset CREATION_TIME_OFFSET = ZoneOffset.ofHours(2);
+    // Incremental aggregation bookkeeping, see setNutrientsMapAndWeights()
+    static final int FULL_AGGREGATION_INTERVAL = 64;
+    // Rows in columns of the children changed since the last aggregation
+    private final BitSet changedRows;
+    private final ChildColumns columns;
+    private final WeightTotal childWeights;
+    private boolean fullAggregationNeeded = true;
+    // Set when children or their weights change, which parents read besides the aggregates (see recomputeAndDetectChange())
+    private boolean childrenChanged;
+    // Set when serialized state that is not aggregated changes, see stateChanged()
+    private boolean ownStateChanged;
+    private int incrementalAggregations;
+    // Position in the creation order, assigned by Manager.register().
+    long creationSequence;
+    // Dense handle in the Manager index, -1 while unregistered; see HandleTable.
+    int handle = -1;
+    // Set by Manager.pin() for objects that are roots of their own and must not be reclaimed as orphans.
+    volatile boolean pinned;
 
 	// Constructor creating new id
     public BaseClass() {
-        this.creationTime = OffsetDateTime.now(ZoneOffset.ofHours(2));
-        UUID id = UUID.randomUUID();
-        this.id = id;
-        this.name = "Unnamed " + getClass().getSimpleName();
-        Manager.register(id, this);
+        this(UUID.randomUUID(), false);
     }
 
 	// Constructor accepting id as parameter
 	public BaseClass(UUID id) {
-		this.id = id;
-		this.creationTime = OffsetDateTime.now(ZoneOffset.ofHours(2));
-		this.name = "Unnamed " + getClass().getSimpleName();
-		Manager.register(id, this);
+		this(id, false);
 	}
 
+    /**
+     * @param leaf Whether this object can never have children; if so no child structures are allocated.
+     */
+    protected BaseClass(UUID id, boolean leaf) {
+        this.id = id;
+        Instant now = Instant.now();
+        this.creationEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        this.name = ("Unnamed " + getClass().getSimpleName()).intern();
+        this.childMap = leaf ? Collections.emptyMap() : new LinkedHashMap<>();
+        this.nameIndex = leaf ? NameIndex.EMPTY : new NameIndex();
+        this.changedRows = leaf ? null : new BitSet();
+        this.columns = leaf ? null : new ChildColumns();
+        this.childWeights = leaf ? null : new WeightTotal();
+        Manager.register(id, this);
+    }
+
     public String getName() {
         return this.name;
     }
 
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
-        
-        // Trigger update propagation
-        this.updateAndPropagate();
+        for (BaseClass parent : parents) {
+            parent.childRenamed(this, oldName);
+        }
+
+        // A name is no aggregate, so nothing is recomputed; only versions change
+        touch();
     }
 
     public UUID getId() {
         return this.id;
     }
 
+    /**
+     * @return The dense handle of this object in the {@link Manager} index, or -1 while it is not registered.
+     * Edges inside the graph refer to objects by handle; ids are for the REST API and JSON.
+     */
+    public int handle() {
+        return handle;
+    }
+
     public void setEnergyDensity() {
-        double carbsRatio = nutrientsMap.get("carbs");
-        double proteinRatio = nutrientsMap.get("protein");
-        double fatRatio = nutrientsMap.get("fat");
+        double carbsRatio = nutrientsMap.get(Nutrient.CARBS);
+        double proteinRatio = nutrientsMap.get(Nutrient.PROTEIN);
+        double fatRatio = nutrientsMap.get(Nutrient.FAT);
 
-        this.energyDensity = (carbsRatio + proteinRatio) * 4000 + fatRatio * 9000;
+        this.energyDensity = Nutrient.energyDensity(proteinRatio, fatRatio, carbsRatio);
     }
 
     // NOTE: used in template
     public double getEnergyDensity() {
+        ensureFresh();
         return this.energyDensity;
     }
 
     public NutrientsMap getNutrientsMap() {
+        ensureFresh();
         return nutrientsMap;
     }
 
@@ -85,86 +141,132 @@ public abstract class BaseClass {
     /**
      * Recalculates the nutrientsMap() based on childMap and ratiosMap
      * This method should be run if childMap has been updated.
+     * <p>When only a few children changed since the last run (see {@link #childChanged(BaseClass)}), their
+     * differences are applied as deltas in O(nutrients) per child. A full re-sum is done after structural
+     * changes, when many children changed, and every {@value #FULL_AGGREGATION_INTERVAL} incremental runs
+     * to bound floating-point drift.</p>
+     * <p>A full re-sum runs over {@link ChildColumns}, where only the rows of changed children are gathered
+     * again (all rows after a structural change).</p>
      */
     protected void setNutrientsMapAndWeights() {
-        Set<String> nutrients = nutrientsMap.keySet();
-
-        // Reset this baseclass nutrientsMap
-        for (String nutrient : nutrients) {
-            nutrientsMap.put(nutrient, 0.0);
+        if (fullAggregationNeeded
+                || incrementalAggregations >= FULL_AGGREGATION_INTERVAL
+                || changedRows.cardinality() * 2 > childMap.size()) {
+            aggregateAllChildren();
+        } else {
+            aggregateChangedChildren();
         }
+        setEnergyDensity();
+    }
 
-        // Add all weighted nutrients of the baseclass to this baseclass' nutrientMap
-        for (UUID key : childMap.keySet()) {
-            double ratio = childMap.get(key).getRatio();
-            BaseClass baseClass = childMap.get(key).getChild();
-            NutrientsMap baseClassNutrients = baseClass.getNutrientsMap();
-
-            for (String nutrient : nutrients) {
-                nutrientsMap.merge(nutrient, baseClassNutrients.get(nutrient),
-                        (oldValue, newValue) -> (oldValue + newValue * ratio));
+    private void aggregateAllChildren() {
+        if (fullAggregationNeeded) {
+            columns.rebuild(childMap.values());
+        } else {
+            // Rows of unchanged children are still current, so only the changed ones are gathered again.
+            for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+                columns.update(row);
             }
         }
-        setEnergyDensity();
+        columns.weightedSum(nutrientsMap);
+        aggregateMicronutrients();
+        changedRows.clear();
+        fullAggregationNeeded = false;
+        incrementalAggregations = 0;
     }
 
+    private void aggregateChangedChildren() {
+        boolean micronutrientsChanged = nutrientsMap.hasMicronutrients();
+        for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+            columns.apply(row);
+            micronutrientsChanged |= columns.childAt(row).getNutrientsMap().hasMicronutrients();
+        }
+        columns.writeAverage(nutrientsMap);
+        if (micronutrientsChanged) {
+            aggregateMicronutrients();
+        }
+        changedRows.clear();
+        incrementalAggregations++;
+    }
 
     /**
-     * Resizes the percentage hashmap values assuming all take equal space, so their sum is one.
-     * If empty returned weight is 1.
-     *
-     * @return the value of the new allocated space
+     * Re-sums the sparse micronutrients of all children. Children without micronutrients are skipped after
+     * one check, so this costs nothing while no ingredient carries any.
      */
-    protected double giveSpaceForAnotherEntry() {
-        double size = childMap.size();
-        double oldEntriesAllowedSpace = size / (size + 1);
-        double sumNewValue = 0.0;
-
-        if (!childMap.isEmpty()) {
-            for (UUID key : childMap.keySet()) {
-                double oldValue = childMap.get(key).getRatio();
-                double newValue = oldValue * oldEntriesAllowedSpace;
-                sumNewValue += newValue;
-                childMap.get(key).setRatio(newValue);
-            }
+    private void aggregateMicronutrients() {
+        nutrientsMap.resetMicronutrients();
+        columns.addMicronutrients(nutrientsMap);
+    }
+
+    /**
+     * Notes that the nutrients or weight of a child changed, so the next aggregation can apply it as a delta.
+     * The child's row is found by handle; a child without one (no longer registered) is re-summed in full.
+     */
+    void childChanged(BaseClass child) {
+        if (fullAggregationNeeded) {
+            return;
+        }
+        int row = columns.rowOf(child);
+        if (row >= 0) {
+            changedRows.set(row);
+        } else if (childMap.containsKey(child.getId())) {
+            fullAggregationNeeded = true;
         }
-        return 1 - sumNewValue;
     }
 
     /**
-     * For a given weightedValue space, enlarge the other weighted values in proportion for sum to remain 1.
-     * <p>This method should be run if child is removed from childMap.</p>
+     * Notes that childMap changed structurally, so the next aggregation re-sums all children.
+     */
+    protected void requireFullAggregation() {
+        fullAggregationNeeded = true;
+        childrenChanged = true;
+        changedRows.clear();
+    }
+
+    /**
+     * @return The weight for a new child to get an equal share, i.e. the average weight of the current
+     * children (1.0 without children). No sibling is rescaled; their ratios follow from the new total.
      */
-    protected void scaleEntriesOnRemoval(double weightedValue) {
-        double scaleFactor = 1 / (1 - weightedValue);
-        for (UUID key : childMap.keySet()) {
-            double value = childMap.get(key).getRatio();
-            childMap.get(key).setRatio(value * scaleFactor);
+    protected double averageChildWeight() {
+        if (childMap.isEmpty()) {
+            return 1.0;
         }
+        return FixedPoint.toRatio(childWeights.get() / childMap.size());
     }
 
     /**
      * Print info about this object.
      */
     public void getInfo() {
-        System.out.println();
-        System.out.println("Summary " + "of " + getClass().getSimpleName() + " \"" + getName() + "\":");
-        System.out.println();
+        // Rendered like a snapshot read, which refreshes a stale object under write locks first;
+        // the reader itself must not refresh, and is printed only once it has validated.
+        System.out.print(ModelLocks.read(this, this::renderInfo));
+    }
+
+    /**
+     * @return The summary printed by {@link #getInfo()}. Only called inside {@link ModelLocks#read}.
+     */
+    protected String renderInfo() {
+        StringWriter buffer = new StringWriter();
+        PrintWriter out = new PrintWriter(buffer);
+        out.println();
+        out.println("Summary " + "of " + getClass().getSimpleName() + " \"" + getName() + "\":");
+        out.println();
         childMap.forEach((key, value) -> {
-            System.out.printf("%10s |", value.getChild().getName());
-            System.out.printf(" ratio: " + "%5.1f %%", childMap.get(key).getRatio() * 100);
+            out.printf("%10s |", value.getChild().getName());
+            out.printf(" ratio: " + "%5.1f %%", childMap.get(key).getRatio() * 100);
             if (getClass() != Adventure.class) {
-                System.out.printf(" | weight: " + "%5.1f g", childMap.get(key).getRecipeWeight());
+                out.printf(" | weight: " + "%5.1f g", childMap.get(key).getRecipeWeight());
             }
             Set<String> nutrients = childMap.get(key).getChild().getNutrientsMap().keySet();
             for (String nutrient : nutrients) {
-                System.out.printf(" | %s: %4.1f %%", nutrient, childMap.get(key).getChild().getNutrientsMap().get(nutrient) * 100);
+                out.printf(" | %s: %4.1f %%", nutrient, childMap.get(key).getChild().getNutrientsMap().get(nutrient) * 100);
             }
-            System.out.println();
+            out.println();
         });
 
-        System.out.println();
-        System.out.printf("%10s |", getClass().getSimpleName());
+        out.println();
+        out.printf("%10s |", getClass().getSimpleName());
         Set<UUID> children = childMap.keySet();
         double sum = 0;
 
@@ -172,24 +274,26 @@ public abstract class BaseClass {
             sum += childMap.get(id).getRatio();
         }
 
-        System.out.printf(" ratio: " + "%5.1f %%", sum * 100);
+        out.printf(" ratio: " + "%5.1f %%", sum * 100);
 
         if (getClass() != Adventure.class) {
             sum = 0;
             for (UUID id : children) {
                 sum += childMap.get(id).getRecipeWeight();
             }
-            System.out.printf(" | weight: " + "%5.1f g", sum);
+            out.printf(" | weight: " + "%5.1f g", sum);
         }
 
         Set<String> nutrients = getNutrientsMap().keySet();
         for (String nutrient : nutrients) {
-            System.out.printf(" | %s: %4.1f %%", nutrient, getNutrientsMap().get(nutrient) * 100);
+            out.printf(" | %s: %4.1f %%", nutrient, getNutrientsMap().get(nutrient) * 100);
         }
-        System.out.println();
-        System.out.println();
+        out.println();
+        out.println();
 
-        System.out.printf("Energy Density of " + getClass().getSimpleName() + ": %4.0f KCal/Kg %n%n", energyDensity);
+        out.printf("Energy Density of " + getClass().getSimpleName() + ": %4.0f KCal/Kg %n%n", energyDensity);
+        out.flush();
+        return buffer.toString();
     }
 
     /**
@@ -204,29 +308,57 @@ public abstract class BaseClass {
 		if (newChild == null) {
 			throw new IllegalArgumentException("newChild cannot be null - must be a subclass of BaseClass.");
 		}
+        rejectCycle(newChild);
+        EditScope.lockIfOpen(this);
+        EditScope.lockIfOpen(newChild);
         ChildWrapper newChildWrapper = new ChildWrapper(newChild, newWeightedValue, absWeight);
-        childMap.put(newChild.getId(), newChildWrapper);
-        newChild.addParent(this.getId());
+        ChildWrapper replaced = childMap.put(newChild.getId(), newChildWrapper);
+        if (replaced != null) {
+            replaced.detach();
+            nameIndex.remove(replaced.getChild().getName(), newChild.getId());
+        }
+        newChildWrapper.attach(childWeights);
+        nameIndex.add(newChild.getName(), newChild.getId());
+        newChild.addParent(this);
+        requireFullAggregation();
         // NOTE: Registration in Manager is done in constructor.
-        updateNameIndex();
         this.updateAndPropagate(); // Trigger update
         return newChild.getId();
     }
 
     /**
-     * Update the weighted value of an existing child.
+     * Guards against adding this object, or one of its ancestors, as a child of itself.
+     *
+     * @throws IllegalArgumentException if newChild would create a cycle.
+     */
+    private void rejectCycle(BaseClass newChild) {
+        if (PropagationEngine.collectAncestors(List.of(this)).contains(newChild)) {
+            throw new IllegalArgumentException(newChild.getClass().getSimpleName() + " \"" + newChild.getName() +
+                    "\" cannot be added as a child of its own descendant \"" + getName() + "\".");
+        }
+    }
+
+    /**
+     * Update the unnormalized weight of an existing child. The ratios of all children follow from the new
+     * total when read, so only this child is touched.
      * The key must be present in childMap.
      *
-     * @param key              Key of the child to update.
-     * @param newWeightedValue The new weighted value.
+     * @param key         Key of the child to update.
+     * @param weightUnits The new weight, in {@link FixedPoint} units or any unit shared by all children.
      * @throws IllegalArgumentException if the key is not present in childMap.
      */
-    protected void modifyRatio(UUID key, Double newWeightedValue) {
+    protected void modifyChildWeight(UUID key, long weightUnits) {
         if (!childMap.containsKey(key)) {
             throw new IllegalArgumentException("Child with key not present in childMap.");
         }
         ChildWrapper childWrapper = childMap.get(key);
-        childWrapper.setRatio(newWeightedValue);
+        if (childWrapper.weightUnits() == weightUnits) {
+            return;
+        }
+        EditScope.lockIfOpen(this);
+        childWrapper.setWeightUnits(weightUnits);
+        childrenChanged = true;
+        childChanged(childWrapper.getChild());
     }
 
     /**
@@ -241,9 +373,10 @@ public abstract class BaseClass {
         if (!childMap.containsKey(key)) {
             throw new IllegalArgumentException("Child with key not present in childMap.");
         }
+        EditScope.lockIfOpen(this);
         ChildWrapper childWrapper = childMap.get(key);
         childWrapper.setRecipeWeight(newRecipeWeight);
-        setNutrientsMapAndWeights();
+        childrenChanged = true;
         this.updateAndPropagate(); // Trigger update
     }
 
@@ -259,25 +392,29 @@ public abstract class BaseClass {
         if (!childMap.containsKey(key)) {
             throw new IllegalArgumentException("Child with key not present in childMap.");
         }
+        rejectCycle(newChild);
+        EditScope.lockIfOpen(this);
+        EditScope.lockIfOpen(newChild);
         ChildWrapper childWrapper = childMap.get(key);
         // Unregister old child's parent if necessary
         BaseClass oldChild = childWrapper.getChild();
         if (oldChild != null) {
-            oldChild.removeParent(this.getId());
+            oldChild.removeParent(this);
+            nameIndex.remove(oldChild.getName(), key);
         }
         // Set new child and register parent
         childWrapper.setChild(newChild);
-        newChild.addParent(this.getId());
-        updateNameIndex();
-        setNutrientsMapAndWeights();
+        newChild.addParent(this);
+        nameIndex.add(newChild.getName(), key);
+        requireFullAggregation();
         this.updateAndPropagate();
     }
 
 
     /**
-     * Removes child using the name index, updates name index and scales the ratioMap so all children sum remains equal to 1.
+     * Removes child using the name index, updates name index and takes its weight out of the total, so the ratios of the remaining children still sum to 1.
      *
-     * @param name Name of the child to remove.
+     * @param name Name of the child to remove, ignoring case.
      */
     public String removeChild(String name) {
         UUID key = nameIndex.get(name);
@@ -289,26 +426,27 @@ public abstract class BaseClass {
     }
 
     /**
-     * Removes child using key, updates name index and scales the ratioMap so all children sum remains equal to 1.
+     * Removes child using key, updates name index and takes its weight out of the total, so the ratios of the remaining children still sum to 1.
      *
      * @param key Key of the child to remove.
      * @return String as recipe for successful removal. Throws error if removal was unsuccessful.
      */
     public String removeChild(UUID key) {
+        EditScope.lockIfOpen(this);
         // Unregister parent before removal
         ChildWrapper removedWrapper = childMap.get(key);
         if (removedWrapper != null) {
              BaseClass childToRemove = removedWrapper.getChild();
              if (childToRemove != null) {
-                 childToRemove.removeParent(this.getId());
+                 childToRemove.removeParent(this);
              }
         }
 
         ChildWrapper wasRemoved = childMap.remove(key);
         if (wasRemoved != null) {
-            updateNameIndex();
-            scaleEntriesOnRemoval(wasRemoved.getRatio());
-            setNutrientsMapAndWeights();
+            wasRemoved.detach();
+            nameIndex.remove(wasRemoved.getChild().getName(), key);
+            requireFullAggregation();
             this.updateAndPropagate();
             return "Child " + wasRemoved.getChild().getName() + " was successfully removed.";
         } else {
@@ -320,17 +458,50 @@ public abstract class BaseClass {
     }
 
     /**
-     * Keeps a name index over current child objects of this BaseClass.
-     * <p>Should be updated when children are added or removed from this object.</p>
+     * @return The child with the given name, ignoring case, or null.
      */
-    protected void updateNameIndex() {
-        nameIndex.clear();
-        for (UUID key : childMap.keySet()) {
-            nameIndex.put(childMap.get(key).getChild().getName(), key);
+    public BaseClass findChildByName(String name) {
+        ChildWrapper childWrapper = childMap.get(nameIndex.get(name));
+        return childWrapper == null ? null : childWrapper.getChild();
+    }
+
+    /**
+     * @return The children whose names start with the prefix, ignoring case, ordered by name.
+     */
+    public List<BaseClass> findChildrenByNamePrefix(String prefix) {
+        List<BaseClass> children = new ArrayList<>();
+        for (UUID key : nameIndex.findByPrefix(prefix)) {
+            ChildWrapper childWrapper = childMap.get(key);
+            if (childWrapper != null) {
+                children.add(childWrapper.getChild());
+            }
         }
+        return children;
+    }
+
+    /**
+     * Moves a renamed child to its new name in the name index.
+     */
+    private void childRenamed(BaseClass child, String oldName) {
+        UUID key = child.getId();
+        ChildWrapper childWrapper = childMap.get(key);
+        if (childWrapper == null || childWrapper.getChild() != child) {
+            // Swapped in with modifyChild(), so indexed under the key of the child it replaced.
+            key = null;
+            for (Map.Entry<UUID, ChildWrapper> entry : childMap.entrySet()) {
+                if (entry.getValue().getChild() == child) {
+                    key = entry.getKey();
+                }
+            }
+            if (key == null) {
+                return;
+            }
+        }
+        nameIndex.rename(key, oldName, child.getName());
     }
 
     public double getWeight() {
+        ensureFresh();
         return weight;
     }
 
@@ -339,7 +510,8 @@ public abstract class BaseClass {
      * @return OffsetDateTime
      */
     public OffsetDateTime getCreationTime() {
-        return creationTime;
+        Instant creation = Instant.ofEpochSecond(0, creationEpochNanos);
+        return OffsetDateTime.ofInstant(creation, CREATION_TIME_OFFSET);
     }
 
     // NOTE: Used in template.
@@ -349,39 +521,161 @@ public abstract class BaseClass {
 
     // NOTE: Used in template
     public String getFormattedEnergyDensity() {
-        return String.format(Locale.US, "%.1f", energyDensity);
+        return String.format(Locale.US, "%.1f", getEnergyDensity());
     }
 
-    // Method to add parent ID
-    public void addParent(UUID parentId) {
-        this.parents.add(parentId);
+    // Method to add a parent
+    public void addParent(BaseClass parent) {
+        this.parents.add(parent);
     }
 
-    // Method to remove parent ID
-    public void removeParent(UUID parentId) {
-        this.parents.remove(parentId);
+    // Method to remove a parent
+    public void removeParent(BaseClass parent) {
+        this.parents.remove(parent);
     }
 
-    // Base update and propagation method
-    // Made public so Resource classes can trigger it after batch updates
+    /**
+     * Applies a batch of changes with propagation deferred to a single commit.
+     * See {@link Manager#edit(UUID, Consumer)}.
+     */
+    public void edit(Consumer<EditScope> changes) {
+        try (EditScope scope = EditScope.open(this)) {
+            changes.accept(scope);
+        }
+    }
+
+    /**
+     * Recalculates the aggregates of this object only, assuming its children are up to date.
+     * <p>Overridden by subclasses whose aggregates are not derived from childMap (e.g. Ingredient).</p>
+     */
+    protected void recompute() {
+        setNutrientsMapAndWeights();
+    }
+
+    /**
+     * Runs {@link #recompute()}.
+     *
+     * @return Whether anything the parents of this object read changed: its children or their weights, its
+     * own state (see {@link #stateChanged()}), or its aggregates (nutrients, energy density, weight) beyond
+     * {@link Propagation#getChangeTolerance()}. A leaf is only recomputed after its own data was changed, so
+     * it always counts as changed.
+     */
+    boolean recomputeAndDetectChange() {
+        boolean changedItself = childrenChanged || ownStateChanged || columns == null;
+        childrenChanged = false;
+        ownStateChanged = false;
+        double[] previousNutrients = nutrientsMap.snapshot();
+        double previousEnergyDensity = energyDensity;
+        double previousWeight = weight;
+        recompute();
+        return changedItself
+                || nutrientsMap.differsFrom(previousNutrients, Propagation.getChangeTolerance())
+                || Propagation.changed(previousEnergyDensity, energyDensity)
+                || Propagation.changed(previousWeight, weight);
+    }
+
+    /**
+     * Notes a change of serialized state that the aggregates may not reflect (e.g. the days of an
+     * Adventure), so the next recomputation counts as a change and this object gets a new version even
+     * if its aggregates come out the same. Unlike {@link #touch()} the version only moves when the change
+     * is propagated.
+     */
+    protected void stateChanged() {
+        ownStateChanged = true;
+    }
+
+    /**
+     * Base update and propagation method.
+     * <p>In eager mode this object and all of its ancestors are recalculated before returning, each
+     * exactly once and children before parents (see {@link PropagationEngine}). In lazy mode they are
+     * only marked as stale, and recalculated on the next read. In async mode they are queued on
+     * {@link RecomputeExecutor} and recalculated in the background. Inside an {@link EditScope} the object is
+     * only recorded, and propagated when the scope commits.</p>
+     * Made public so Resource classes can trigger it after batch updates.
+     *
+     * @throws IllegalStateException if this object is part of a cycle in the model graph.
+     */
     public void updateAndPropagate() {
+        if (EditScope.deferIfOpen(this)) {
+            return;
+        }
+        if (Propagation.isLazy()) {
+            markDirty();
+            return;
+        }
+        if (Propagation.isAsync()) {
+            RecomputeExecutor.submit(List.of(this));
+            return;
+        }
         Log.infof("[%s ID: %s] Entering updateAndPropagate.", getClass().getSimpleName(), getId());
+        PropagationEngine.propagate(List.of(this));
+        Log.infof("[%s ID: %s] Exiting updateAndPropagate.", getClass().getSimpleName(), getId());
+    }
 
-        // Specific update logic should be implemented in subclasses BEFORE this call
-        Log.infof("[%s ID: %s] Propagating update upwards to %d parent(s).", getClass().getSimpleName(), getId(), parents.size());
-        for (UUID parentId : parents) {
-            BaseClass parent = Manager.getBaseClass(parentId);
-            if (parent != null) {
-                Log.infof("[%s ID: %s] --> Calling updateAndPropagate on parent [%s ID: %s].",
-                          getClass().getSimpleName(), getId(), parent.getClass().getSimpleName(), parentId);
-                parent.updateAndPropagate(); // Recursive call to the parent's version
-            } else {
-                Log.warnf("[%s ID: %s] Found null parent reference during propagation for parent ID: %s",
-                          getClass().getSimpleName(), getId(), parentId);
-                // Optionally remove the null parent reference here if desired
-                // this.parents.remove(parentId); // Be careful with concurrent modification if iterating directly
+    /**
+     * Marks this object and all of its ancestors as stale. Ancestors that are already stale are not
+     * revisited, since a stale object always has stale ancestors. The newly marked objects are passed to
+     * the {@link PropagationListener}s.
+     */
+    protected void markDirty() {
+        Set<BaseClass> marked = new LinkedHashSet<>();
+        Deque<BaseClass> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            BaseClass node = stack.pop();
+            if (node.dirty) {
+                continue;
+            }
+            node.dirty = true;
+            node.bumpVersion();
+            marked.add(node);
+            for (BaseClass parent : node.parents) {
+                stack.push(parent);
             }
         }
-        Log.infof("[%s ID: %s] Exiting updateAndPropagate.", getClass().getSimpleName(), getId());
+        if (!marked.isEmpty()) {
+            Propagation.notifyMarkedStale(Collections.unmodifiableSet(marked));
+        }
+    }
+
+    /**
+     * Recalculates this object if it has been marked as stale, refreshing stale children first.
+     * Does nothing in eager mode, where objects are never stale, and inside a {@link ModelLocks#read},
+     * which refreshes under write locks before running its reader.
+     */
+    protected void ensureFresh() {
+        if (dirty && !ModelLocks.isReading()) {
+            PropagationEngine.refresh(this);
+        }
+    }
+
+    void clearDirty() {
+        dirty = false;
+    }
+
+    /**
+     * @return A counter that increases whenever this object or anything below it changes (recomputed,
+     * marked as stale, or touched). Used for ETags.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    protected void bumpVersion() {
+        VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * Bumps the version of this object and all of its ancestors, for changes that don't affect any
+     * aggregates but are still part of the serialized state (e.g. the measurement unit of an Ingredient).
+     */
+    protected void touch() {
+        for (BaseClass node : PropagationEngine.collectAncestors(List.of(this))) {
+            node.bumpVersion();
+        }
+    }
+
+    boolean isDirty() {
+        return dirty;
     }
 }
@@ -33,12 +33,7 @@ public class CrewMember {
 
         UUID id = UUID.randomUUID();
 
-        KCalCalculationStrategy someStrategy = switch (strategy.toLowerCase()) {
-            case "harris_benedict_original" -> new HarrisBenedictOriginal();
-            case "harris_benedict_revised" -> new HarrisBenedictRevised();
-            case "mifflin_st_jeor" -> new MifflinStJeor();
-            default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
-        };
+        KCalCalculationStrategy someStrategy = strategyFor(strategy);
         this.creationTime = OffsetDateTime.now(ZoneOffset.ofHours(2));
         this.uuid = id;
         this.name = name;
@@ -52,6 +47,29 @@ public class CrewMember {
         Manager.register(id, this);
     }
 
+    /**
+     * Checks that a crew member can be created from the given attributes, without creating it.
+     *
+     * @throws IllegalArgumentException if gender, activity or strategy is unknown.
+     */
+    public static void validateAttributes(String gender, String activity, String strategy) {
+        if (gender == null || activity == null || strategy == null) {
+            throw new IllegalArgumentException("Gender, activity and strategy must all be provided.");
+        }
+        Gender.valueOf(gender.toUpperCase());
+        PhysicalActivity.valueOf(activity.toUpperCase());
+        strategyFor(strategy);
+    }
+
+    private static KCalCalculationStrategy strategyFor(String strategy) {
+        return switch (strategy.toLowerCase()) {
+            case "harris_benedict_original" -> new HarrisBenedictOriginal();
+            case "harris_benedict_revised" -> new HarrisBenedictRevised();
+            case "mifflin_st_jeor" -> new MifflinStJeor();
+            default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        };
+    }
+
     public int getDailyKCalNeed() {
         double BMR = kCalCalculationStrategy.determineBMR(age, height, weight, gender);
         return (int) kCalCalculationStrategy.determineKCal(BMR, activity);
@@ -0,0 +1,190 @@
+package io.hulsbo.model;
+
+import io.quarkus.logging.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A batch of model changes whose propagation is deferred to a single commit.
+ * <p>While a scope is open on the current thread, {@link BaseClass#updateAndPropagate()} only records
+ * the object as modified. When the outermost scope is closed, all recorded objects and their ancestors
+ * are recomputed once (marked as stale in lazy mode, queued on {@link RecomputeExecutor} in async mode).
+ * Scopes opened inside an open scope join it.</p>
+ * <p>A scope holds the write locks ({@link ModelLocks}) of the adventures above its root from open to
+ * commit. Every other object adds the locks of its own adventures before it is first changed or linked
+ * into the graph (e.g. a catalog Ingredient shared with meals of other adventures), so a lock that cannot
+ * be acquired fails the change before it is applied, and the commit already holds the locks of every
+ * ancestor it recomputes. Callers that change several such objects can lock them all up front with
+ * {@link #lock(BaseClass)}.</p>
+ * <p>Changes are not rolled back if the batch fails halfway; the commit still runs, so aggregates
+ * always match whatever was applied.</p>
+ *
+ * <pre>
+ * Manager.edit(mealId, tx -&gt; {
+ *     Meal meal = tx.getRoot(Meal.class);
+ *     meal.modifyWeightOfIngredient(oatsId, 80.0);
+ *     meal.modifyWeightOfIngredient(nutsId, 40.0);
+ *     meal.updateAndPropagate(); // deferred
+ * });
+ * </pre>
+ */
+public final class EditScope implements AutoCloseable {
+    private static final ThreadLocal<Batch> CURRENT = new ThreadLocal<>();
+
+    private final BaseClass root;
+    private final Batch batch;
+    private boolean closed;
+
+    /**
+     * The changes shared by all scopes open on one thread.
+     */
+    private static final class Batch {
+        private final Set<BaseClass> modified = new LinkedHashSet<>();
+        private final ModelLocks.WriteLocks locks;
+        private int openScopes;
+        private long version;
+
+        private Batch(ModelLocks.WriteLocks locks) {
+            this.locks = locks;
+        }
+    }
+
+    private EditScope(BaseClass root, Batch batch) {
+        this.root = root;
+        this.batch = batch;
+    }
+
+    /**
+     * Opens a scope on the current thread, joining the batch of an already open scope if there is one.
+     *
+     * @throws IllegalStateException if the locks of a joined scope's root could not be acquired in time.
+     */
+    static EditScope open(BaseClass root) {
+        Batch batch = CURRENT.get();
+        if (batch == null) {
+            batch = new Batch(ModelLocks.lockForWrite(List.of(root)));
+            CURRENT.set(batch);
+        } else {
+            batch.locks.acquire(ModelLocks.stripesOf(List.of(root)));
+        }
+        batch.openScopes++;
+        return new EditScope(root, batch);
+    }
+
+    /**
+     * Adds the locks guarding an object that is about to be changed or linked into the graph, if a scope
+     * is open on the current thread.
+     *
+     * @throws IllegalStateException if the locks could not be acquired in time.
+     */
+    static void lockIfOpen(BaseClass changedObject) {
+        Batch batch = CURRENT.get();
+        if (batch != null) {
+            batch.locks.acquire(ModelLocks.stripesOf(List.of(changedObject)));
+        }
+    }
+
+    /**
+     * Adds the locks guarding an object outside the root that this scope is going to change, e.g. before
+     * the first of several changes, so that none of them is applied if the locks are not available.
+     *
+     * @throws IllegalStateException if the locks could not be acquired in time.
+     */
+    public void lock(BaseClass changedObject) {
+        batch.locks.acquire(ModelLocks.stripesOf(List.of(changedObject)));
+    }
+
+    /**
+     * Records an object as modified if a scope is open on the current thread.
+     *
+     * @return true if the object was recorded, false if there is no open scope and it should be propagated now.
+     */
+    static boolean deferIfOpen(BaseClass modifiedObject) {
+        Batch batch = CURRENT.get();
+        if (batch == null) {
+            return false;
+        }
+        batch.modified.add(modifiedObject);
+        return true;
+    }
+
+    public BaseClass getRoot() {
+        return root;
+    }
+
+    /**
+     * @return The root object of this scope cast to the expected type.
+     * @throws IllegalArgumentException if the root is not of the expected type.
+     */
+    public <T extends BaseClass> T getRoot(Class<T> type) {
+        if (!type.isInstance(root)) {
+            throw new IllegalArgumentException("Object with id " + root.getId() + " is not a " + type.getSimpleName() + ".");
+        }
+        return type.cast(root);
+    }
+
+    /**
+     * Looks up another object to modify within this scope.
+     *
+     * @return The object, or null if no object of the expected type has that id.
+     */
+    public <T extends BaseClass> T get(UUID id, Class<T> type) {
+        BaseClass baseClass = Manager.getBaseClass(id);
+        return type.isInstance(baseClass) ? type.cast(baseClass) : null;
+    }
+
+    /**
+     * @return The version the committed changes were queued under in async mode, or 0 if the scope has
+     * not committed yet or nothing was queued.
+     */
+    public long getVersion() {
+        return batch.version;
+    }
+
+    /**
+     * Closes this scope. Closing the outermost scope commits the recorded changes.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (--batch.openScopes > 0) {
+            return;
+        }
+        CURRENT.remove();
+        try {
+            commit();
+        } finally {
+            batch.locks.releaseAll();
+        }
+    }
+
+    private void commit() {
+        if (batch.modified.isEmpty()) {
+            return;
+        }
+        List<BaseClass> toCommit = new ArrayList<>(batch.modified);
+        batch.modified.clear();
+        Log.infof("[%s ID: %s] Committing edit scope with %d modified object(s).",
+                root.getClass().getSimpleName(), root.getId(), toCommit.size());
+        if (Propagation.isAsync()) {
+            batch.version = RecomputeExecutor.submit(toCommit);
+            return;
+        }
+        // Every modified object locked the stripes of all of its adventures before it was changed, so no
+        // lock is taken here, and the commit cannot fail after the changes were applied.
+        if (Propagation.isLazy()) {
+            for (BaseClass baseClass : toCommit) {
+                baseClass.markDirty();
+            }
+        } else {
+            PropagationEngine.propagate(toCommit);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package io.hulsbo.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The registry of model objects: every registered object gets a dense {@code int} handle, and objects are
+ * stored in an array indexed by handle. Ids are resolved to handles through an open-addressing table that
+ * keeps the two halves of each UUID inline in {@code long} arrays, so a lookup probes primitive arrays
+ * instead of following a chain of entry and key objects. Handles of removed objects are reused.
+ * <p>Inside the graph, objects refer to each other by handle (see {@link ParentSet} and
+ * {@link io.hulsbo.util.model.baseclass.ChildColumns}) and are resolved with {@link #at(int)}; ids are only
+ * resolved at the boundary, for objects named by the REST API.</p>
+ * <p>Writers are serialized by a {@link StampedLock}; lookups read optimistically and only take the
+ * read lock if a writer interfered.</p>
+ */
+final class HandleTable {
+    private static final int FREE = -1;
+    private static final int REMOVED = -2;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+
+    private BaseClass[] objects = new BaseClass[INITIAL_CAPACITY];
+    private int[] freeHandles = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int nextHandle;
+    private int size;
+
+    // Open addressing with linear probing; a slot holds FREE, REMOVED or the handle of the object with that id.
+    private long[] mostSignificant = new long[INITIAL_CAPACITY * 2];
+    private long[] leastSignificant = new long[INITIAL_CAPACITY * 2];
+    private int[] slots = newSlots(INITIAL_CAPACITY * 2);
+    private int usedSlots;
+
+    /**
+     * Registers an object under its id and assigns it a handle, replacing any object registered under the
+     * same id. The replaced object is unregistered like a removed one; its handle is not passed on, so
+     * edges that still point at it never resolve to its replacement.
+     *
+     * @return The replaced object, or null.
+     */
+    BaseClass put(BaseClass baseClass) {
+        long stamp = lock.writeLock();
+        try {
+            UUID id = baseClass.getId();
+            int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (slot >= 0) {
+                int handle = allocateHandle();
+                BaseClass replaced = objects[slots[slot]];
+                release(replaced);
+                objects[handle] = baseClass;
+                baseClass.handle = handle;
+                slots[slot] = handle;
+                return replaced;
+            }
+            if ((usedSlots + 1) * 2 > slots.length) {
+                rehash(size + 1 > slots.length / 4 ? slots.length * 2 : slots.length);
+            }
+            int handle = allocateHandle();
+            objects[handle] = baseClass;
+            baseClass.handle = handle;
+            insert(id.getMostSignificantBits(), id.getLeastSignificantBits(), handle);
+            size++;
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return The object registered under the id, or null.
+     */
+    BaseClass get(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                BaseClass found = lookup(msb, lsb);
+                if (lock.validate(stamp)) {
+                    return found;
+                }
+            } catch (RuntimeException e) {
+                // Arrays swapped by a concurrent rehash; retried under the read lock.
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return lookup(msb, lsb);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return The object registered under the handle, or null if the handle is free.
+     */
+    BaseClass at(int handle) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            BaseClass[] objects = this.objects;
+            BaseClass found = handle < objects.length ? objects[handle] : null;
+            if (lock.validate(stamp)) {
+                return found;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return handle < objects.length ? objects[handle] : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Unregisters the object if it is the one registered under its id, and frees its handle.
+     *
+     * @return Whether the object was removed.
+     */
+    boolean remove(BaseClass baseClass) {
+        if (baseClass.handle < 0) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            UUID id = baseClass.getId();
+            int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (slot < 0 || slots[slot] != baseClass.handle || objects[slots[slot]] != baseClass) {
+                return false;
+            }
+            slots[slot] = REMOVED;
+            release(baseClass);
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return The registered objects, in handle order.
+     */
+    List<BaseClass> values() {
+        long stamp = lock.readLock();
+        try {
+            List<BaseClass> values = new ArrayList<>(size);
+            for (int handle = 0; handle < nextHandle; handle++) {
+                if (objects[handle] != null) {
+                    values.add(objects[handle]);
+                }
+            }
+            return values;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private BaseClass lookup(long msb, long lsb) {
+        // Read every array once, so a concurrent rehash can at worst make the result invalid, not unsafe.
+        int[] slots = this.slots;
+        long[] mostSignificant = this.mostSignificant;
+        long[] leastSignificant = this.leastSignificant;
+        BaseClass[] objects = this.objects;
+        int mask = slots.length - 1;
+        for (int probe = 0, slot = indexFor(msb, lsb, mask); probe <= mask; probe++, slot = (slot + 1) & mask) {
+            int handle = slots[slot];
+            if (handle == FREE) {
+                return null;
+            }
+            if (handle >= 0 && mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+                return objects[handle];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The slot holding the id, or -1. Only called under the write lock.
+     */
+    private int find(long msb, long lsb) {
+        int mask = slots.length - 1;
+        for (int probe = 0, slot = indexFor(msb, lsb, mask); probe <= mask; probe++, slot = (slot + 1) & mask) {
+            int handle = slots[slot];
+            if (handle == FREE) {
+                return -1;
+            }
+            if (handle >= 0 && mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long msb, long lsb, int handle) {
+        int mask = slots.length - 1;
+        int slot = indexFor(msb, lsb, mask);
+        while (slots[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (slots[slot] == FREE) {
+            usedSlots++;
+        }
+        mostSignificant[slot] = msb;
+        leastSignificant[slot] = lsb;
+        slots[slot] = handle;
+    }
+
+    /**
+     * Clears the slot of an object's handle and queues the handle for reuse.
+     */
+    private void release(BaseClass baseClass) {
+        int handle = baseClass.handle;
+        objects[handle] = null;
+        baseClass.handle = FREE;
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+    }
+
+    private int allocateHandle() {
+        if (freeCount > 0) {
+            return freeHandles[--freeCount];
+        }
+        if (nextHandle == objects.length) {
+            objects = Arrays.copyOf(objects, objects.length * 2);
+        }
+        return nextHandle++;
+    }
+
+    /**
+     * Moves the live entries into fresh arrays of the given capacity, dropping removed slots.
+     */
+    private void rehash(int capacity) {
+        int[] oldSlots = slots;
+        long[] oldMostSignificant = mostSignificant;
+        long[] oldLeastSignificant = leastSignificant;
+        slots = newSlots(capacity);
+        mostSignificant = new long[capacity];
+        leastSignificant = new long[capacity];
+        usedSlots = 0;
+        for (int slot = 0; slot < oldSlots.length; slot++) {
+            if (oldSlots[slot] >= 0) {
+                insert(oldMostSignificant[slot], oldLeastSignificant[slot], oldSlots[slot]);
+            }
+        }
+    }
+
+    private static int indexFor(long msb, long lsb, int mask) {
+        long hash = msb ^ lsb;
+        int mixed = (int) (hash ^ (hash >>> 32)) * 0x9E3779B9;
+        return (mixed ^ (mixed >>> 16)) & mask;
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+        return slots;
+    }
+}
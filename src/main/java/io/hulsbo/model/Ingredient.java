@@ -4,6 +4,9 @@ import java.util.UUID;
 import java.util.Map;
 import io.quarkus.logging.Log;
 import io.hulsbo.util.model.MeasurementUnit;
+import io.hulsbo.util.model.baseclass.Nutrient;
+import io.hulsbo.util.model.baseclass.NutrientRegistry;
+import io.hulsbo.util.model.baseclass.NutrientsMap;
 
 public class Ingredient extends BaseClass {
 
@@ -13,17 +16,14 @@ public class Ingredient extends BaseClass {
     private UUID createdByUserId = null; // if null, ingredient is assumed to be from system.
 
 
+    // An ingredient is a leaf: it never has children, so none of the child structures are allocated.
     public Ingredient() {
-
-        // Not sure this is needed, an ingredient should not have any children.
-        for (UUID key : childMap.keySet()) {
-            nutrientsMap.put(childMap.get(key).getChild().getName(), childMap.get(key).getRatio());
-        }
+        super(UUID.randomUUID(), true);
     }
 
     // Call the overloaded constructor of BaseClass if id is provided
     public Ingredient(UUID id) {
-        super(id);
+        super(id, true);
     }
 
     /**
@@ -36,23 +36,60 @@ public class Ingredient extends BaseClass {
      * @throws IllegalArgumentException if the nutrient key is invalid, value is negative, or sum exceeds 100%.
      */
     public void setNutrientRatio(String nutrient, double ratio) {
+         // Shared by meals of other adventures, whose locks an open edit scope must hold before the change.
+         EditScope.lockIfOpen(this);
          this.nutrientsMap.updateNutrient(nutrient, ratio); // Uses the updated put/updateNutrient logic in NutrientsMap
     }
     
     /**
      * Sets multiple nutrient ratios based on the provided map.
      * Performs validation *before* applying any changes to ensure the final sum does not exceed 100%.
+     * Micronutrients registered in the {@link NutrientRegistry} may be included; they don't count towards the sum.
      * Does NOT trigger normalization or propagation; call normalizeNutrientRatiosAndPropagate() after successful execution.
      *
      * @param updates A map where keys are nutrient names and values are the new ratios (0.0 to 1.0).
      * @throws IllegalArgumentException if any nutrient key is invalid, any value is negative, or the final sum would exceed 100%.
      */
     public void setNutrientRatios(Map<String, Double> updates) {
+        validateNutrientRatios(updates);
+        EditScope.lockIfOpen(this);
+
+        // If valid, apply all updates
+        for (Map.Entry<String, Double> entry : updates.entrySet()) {
+            Nutrient nutrient = Nutrient.fromKey(entry.getKey());
+            if (nutrient != null) {
+                // Bypasses the individual sum check within NutrientsMap.put
+                this.nutrientsMap.set(nutrient, entry.getValue());
+            } else {
+                this.nutrientsMap.setMicronutrient(NutrientRegistry.indexOf(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Checks that {@link #setNutrientRatios(Map)} would accept the given updates, without applying them.
+     *
+     * @param updates A map where keys are nutrient names and values are the new ratios (0.0 to 1.0).
+     * @throws IllegalArgumentException if any nutrient key is invalid, any value is negative, or the final sum would exceed 100%.
+     */
+    public void validateNutrientRatios(Map<String, Double> updates) {
+        validateNutrientRatios(this.nutrientsMap, updates);
+    }
+
+    /**
+     * Checks the updates against the given ratios instead of this Ingredient's, e.g. against the result of
+     * earlier changes in the same batch.
+     *
+     * @param current The ratios the updates would be applied to.
+     * @param updates A map where keys are nutrient names and values are the new ratios (0.0 to 1.0).
+     * @throws IllegalArgumentException if any nutrient key is invalid, any value is negative, or the final sum would exceed 100%.
+     */
+    public static void validateNutrientRatios(NutrientsMap current, Map<String, Double> updates) {
         // 1. Validate input map keys and values
         for (Map.Entry<String, Double> entry : updates.entrySet()) {
             String key = entry.getKey();
             Double value = entry.getValue();
-            if (!this.nutrientsMap.containsKey(key)) {
+            if (NutrientRegistry.indexOf(key) < 0) {
                 throw new IllegalArgumentException("Invalid nutrient key in updates map: " + key);
             }
             if (value == null || value < 0.0 || value > 1.0) { // Also check for > 1.0 here
@@ -60,18 +97,17 @@ public class Ingredient extends BaseClass {
             }
         }
 
-        // 2. Calculate potential final sum
-        double potentialSum = 0.0;
-        // Start with current sum
-        for(double currentVal : this.nutrientsMap.values()) {
-            potentialSum += currentVal;
-        }
+        // 2. Calculate potential final sum, starting with the current sum
+        double potentialSum = current.sum();
 
-        // Adjust sum based on updates
+        // Adjust sum based on updates of core nutrients
         for (Map.Entry<String, Double> entry : updates.entrySet()) {
-            String key = entry.getKey();
+            Nutrient nutrient = Nutrient.fromKey(entry.getKey());
+            if (nutrient == null) {
+                continue; // Micronutrients are not part of the sum
+            }
             double newValue = entry.getValue();
-            double oldValue = this.nutrientsMap.getOrDefault(key, 0.0); // Get current value
+            double oldValue = current.get(nutrient); // Get current value
             potentialSum = potentialSum - oldValue + newValue; // Adjust sum
         }
 
@@ -82,12 +118,6 @@ public class Ingredient extends BaseClass {
                 "Updating nutrients would exceed 100%%. Final sum would be %.1f%%.",
                 potentialSum * 100));
         }
-
-        // 4. If valid, apply all updates
-        for (Map.Entry<String, Double> entry : updates.entrySet()) {
-             // Use internalPut to bypass the individual sum check within NutrientsMap.put
-             this.nutrientsMap.internalPut(entry.getKey(), entry.getValue());
-        }
     }
 
     /**
@@ -96,19 +126,15 @@ public class Ingredient extends BaseClass {
      * Should be called after one or more calls to setNutrientRatio().
      */
     public void normalizeNutrientRatiosAndPropagate() {
+        EditScope.lockIfOpen(this);
         this.nutrientsMap.normalizeRatios(); // Scale ratios if sum < 1.0
-        this.setEnergyDensity(); // Recalculate energy density based on new ratios
-        this.updateAndPropagate(); // Propagate the changes upwards (to Meal, Adventure, etc.)
+        this.updateAndPropagate(); // Recalculate energy density and propagate upwards (to Meal, Adventure, etc.)
     }
 
-    // Override updateAndPropagate
+    // An Ingredient has no children; only its energy density is derived from its nutrients.
     @Override
-    public void updateAndPropagate() {
-        Log.infof("[Ingredient ID: %s] Entering updateAndPropagate.", getId());
-        // Ingredient-specific logic (like setEnergyDensity) happens first
+    protected void recompute() {
         this.setEnergyDensity();
-        super.updateAndPropagate(); // Propagate upwards
-        Log.infof("[Ingredient ID: %s] Exiting updateAndPropagate.", getId());
     }
 
     // --- Getters and Setters for new fields ---
@@ -120,7 +146,9 @@ public class Ingredient extends BaseClass {
     }
 
     public void setMeasurementUnit(MeasurementUnit measurementUnit) {
+        EditScope.lockIfOpen(this);
         this.measurementUnit = measurementUnit;
+        touch();
     }
 
     // PcsWeight
@@ -133,7 +161,9 @@ public class Ingredient extends BaseClass {
         if (g_per_pcs != null && g_per_pcs <= 0) {
             throw new IllegalArgumentException("g_per_pcs must be greater than 0.");
         }
+        EditScope.lockIfOpen(this);
         this.pcsWeight = g_per_pcs;
+        touch();
     }
 
     // Density
@@ -146,7 +176,9 @@ public class Ingredient extends BaseClass {
         if (density_g_ml != null && density_g_ml <= 0) {
             throw new IllegalArgumentException("density_g_ml must be greater than 0.");
         }
+        EditScope.lockIfOpen(this);
         this.density = density_g_ml;
+        touch();
     }
 
     // CreatedByUserId
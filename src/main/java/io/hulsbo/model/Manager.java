@@ -6,30 +6,67 @@ import io.hulsbo.util.model.baseclass.ChildWrapper;
 
 import java.lang.reflect.InaccessibleObjectException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class Manager {
-    static final Map<UUID, BaseClass> baseClassIndex = new HashMap<>();
-    static final Map<UUID, CrewMember> crewMemberIndex = new HashMap<>();
+    // Model objects by id, each with a dense int handle; see HandleTable.
+    static final HandleTable baseClassIndex = new HandleTable();
+    static final Map<UUID, CrewMember> crewMemberIndex = new ConcurrentHashMap<>();
+    // One index per model type (direct subclass of BaseClass), in creation order, keyed by creation sequence.
+    private static final Map<Class<?>, ConcurrentNavigableMap<Long, BaseClass>> typeIndexes = new ConcurrentHashMap<>();
+    private static final AtomicLong creationSequence = new AtomicLong();
+    private static final AtomicLong adventuresVersion = new AtomicLong();
+
+    /**
+     * A page of a listing in creation order.
+     */
+    public static final class Page<T> {
+        private final List<T> items;
+        private final Long nextCursor;
+
+        private Page(List<T> items, Long nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<T> getItems() {
+            return items;
+        }
+
+        /**
+         * @return The cursor to pass to get the next page, or null if this is the last page.
+         */
+        public Long getNextCursor() {
+            return nextCursor;
+        }
+    }
 
     static void register(UUID id, BaseClass baseClass) {
-        baseClassIndex.put(id, baseClass);
+        baseClass.creationSequence = creationSequence.incrementAndGet();
+        BaseClass replaced = baseClassIndex.put(baseClass);
+        if (replaced != null) {
+            typeIndexOf(replaced.getClass()).remove(replaced.creationSequence, replaced);
+        }
+        typeIndexOf(baseClass.getClass()).put(baseClass.creationSequence, baseClass);
+        if (baseClass instanceof Adventure) {
+            adventuresChanged();
+        }
     }
     static void register(UUID id, CrewMember crewMember) {
         crewMemberIndex.put(id, crewMember);
     }
+    /**
+     * @return The objects that have the object with the given id as a direct child, read from the parent
+     * references the child keeps (empty if no such object exists).
+     */
     public static Set<BaseClass> findParents(UUID id) {
-        Set<UUID> keys = baseClassIndex.keySet();
-        Set<BaseClass> parents = new HashSet<>();
-
-        for (UUID key : keys) {
-            ChildWrapper elementOwnChild = baseClassIndex.get(key).childMap.get(id);
-
-            if (elementOwnChild != null) {
-                parents.add(baseClassIndex.get(key));
-            }
-        }
-        return parents;
+        BaseClass child = baseClassIndex.get(id);
+        return child == null ? new HashSet<>() : new HashSet<>(child.parents);
     }
 
 
@@ -38,22 +75,170 @@ public class Manager {
         return baseClassIndex.get(id);
     }
 
+    /**
+     * Returns the object registered under the id, or creates it with the factory, which must register it
+     * under that id (e.g. a catalog Ingredient being materialized). Creations through this method are
+     * serialized, so two callers never register two objects under one id.
+     *
+     * @return The object, or null if the id belongs to an object of another type or the factory returned null.
+     */
+    public static synchronized <T extends BaseClass> T getOrCreate(UUID id, Class<T> type, Supplier<? extends T> factory) {
+        BaseClass existing = baseClassIndex.get(id);
+        if (existing != null) {
+            return type.isInstance(existing) ? type.cast(existing) : null;
+        }
+        return factory.get();
+    }
+
     public static CrewMember getCrewMember(UUID id) {
         return crewMemberIndex.get(id);
     }
 
+    /**
+     * Opens an edit scope on the object with the given id. Use with try-with-resources; propagation of
+     * all changes made before {@link EditScope#close()} is deferred to a single commit.
+     *
+     * @param rootId Id of the object being edited.
+     * @return The open scope.
+     * @throws IllegalArgumentException if no object with that id exists, also if it was removed while the
+     * scope waited for its locks.
+     */
+    public static EditScope beginEdit(UUID rootId) {
+        BaseClass root = baseClassIndex.get(rootId);
+        if (root == null) {
+            throw new IllegalArgumentException("Object with id " + rootId + " could not be found in baseClassIndex.");
+        }
+        EditScope scope = EditScope.open(root);
+        // Objects are removed under the write locks, so once they are held the object stays registered.
+        if (baseClassIndex.get(rootId) != root) {
+            scope.close();
+            throw new IllegalArgumentException("Object with id " + rootId + " could not be found in baseClassIndex.");
+        }
+        return scope;
+    }
+
+    /**
+     * Applies a batch of changes to the object with the given id (and anything below it), with
+     * propagation suspended until the batch is done. Each affected object is then recomputed once.
+     *
+     * @param rootId  Id of the object being edited.
+     * @param changes The changes to apply.
+     * @return The edited object.
+     * @throws IllegalArgumentException if no object with that id exists.
+     */
+    public static BaseClass edit(UUID rootId, Consumer<EditScope> changes) {
+        try (EditScope scope = beginEdit(rootId)) {
+            changes.accept(scope);
+            return scope.getRoot();
+        }
+    }
 
+
+    /**
+     * Removes an object from the index, together with every object below it that is left without parents
+     * (unless it is a root, see {@link #pin(BaseClass)}), and the crew members of a removed adventure.
+     * The removal runs under the write locks of the object's adventures, like {@link #reclaimOrphan(UUID)}.
+     */
     public static String removeBaseClassObject(UUID id) {
 
-        BaseClass baseClass = baseClassIndex.remove(id);
+        BaseClass baseClass = baseClassIndex.get(id);
 
         if (baseClass != null) {
+            ModelLocks.WriteLocks locks = ModelLocks.lockForWrite(List.of(baseClass));
+            try {
+                if (baseClassIndex.get(id) != baseClass) {
+                    throw new InaccessibleObjectException("Object with id " + id + " was removed concurrently.");
+                }
+                removeCascading(baseClass);
+            } finally {
+                locks.releaseAll();
+            }
             return baseClass.getClass().getSimpleName() + " \"" +  baseClass.getName() + "\" " + " was successfully removed from index.";
         } else {
             throw new InaccessibleObjectException("Object with id " + id + " could not be found in baseClassIndex. Already deleted?");
         }
     }
 
+    /**
+     * Marks an object as a root of its own (e.g. a Meal created on its own), so it is never reclaimed while
+     * it has no parents. Adventures are always roots.
+     */
+    public static void pin(BaseClass baseClass) {
+        baseClass.pinned = true;
+    }
+
+    static boolean isRoot(BaseClass baseClass) {
+        return baseClass.pinned || baseClass instanceof Adventure;
+    }
+
+    /**
+     * @return The ids of the objects that have no parents and are not roots, i.e. that nothing reaches.
+     */
+    public static List<UUID> findOrphans() {
+        List<UUID> orphans = new ArrayList<>();
+        for (BaseClass baseClass : baseClassIndex.values()) {
+            if (baseClass.parents.isEmpty() && !isRoot(baseClass)) {
+                orphans.add(baseClass.getId());
+            }
+        }
+        return orphans;
+    }
+
+    /**
+     * Removes an orphan (see {@link #findOrphans()}) and, transitively, the objects below it that are left
+     * without parents. The object is checked again under its write lock, since it may have been added to a
+     * parent in the meantime.
+     *
+     * @return The removed objects; empty if the object is gone or no longer an orphan.
+     */
+    public static List<BaseClass> reclaimOrphan(UUID id) {
+        BaseClass orphan = baseClassIndex.get(id);
+        if (orphan == null) {
+            return List.of();
+        }
+        ModelLocks.WriteLocks locks = ModelLocks.lockForWrite(List.of(orphan));
+        try {
+            if (!orphan.parents.isEmpty() || isRoot(orphan) || baseClassIndex.get(id) != orphan) {
+                return List.of();
+            }
+            return removeCascading(orphan);
+        } finally {
+            locks.releaseAll();
+        }
+    }
+
+    private static List<BaseClass> removeCascading(BaseClass removed) {
+        List<BaseClass> removedObjects = new ArrayList<>();
+        Deque<BaseClass> worklist = new ArrayDeque<>(List.of(removed));
+        while (!worklist.isEmpty()) {
+            BaseClass baseClass = worklist.pop();
+            if (baseClassIndex.get(baseClass.getId()) != baseClass) {
+                continue;
+            }
+            // Its children no longer propagate into it, and are reclaimed with it if nothing else holds them.
+            // They hold it by handle, so they are detached before the handle is freed.
+            for (ChildWrapper wrapper : baseClass.childMap.values()) {
+                BaseClass child = wrapper.getChild();
+                child.removeParent(baseClass);
+                if (child.parents.isEmpty() && !isRoot(child)) {
+                    worklist.push(child);
+                }
+            }
+            baseClassIndex.remove(baseClass);
+            removedObjects.add(baseClass);
+            typeIndexOf(baseClass.getClass()).remove(baseClass.creationSequence, baseClass);
+            RecomputeExecutor.forget(baseClass.getId());
+            Propagation.notifyRemoved(baseClass);
+            if (baseClass instanceof Adventure) {
+                for (CrewMember crewMember : ((Adventure) baseClass).getAllCrewMembers()) {
+                    crewMemberIndex.remove(crewMember.getId());
+                }
+                adventuresChanged();
+            }
+        }
+        return removedObjects;
+    }
+
     static String removeCrewMember(UUID id) {
 
 
@@ -66,22 +251,78 @@ public class Manager {
         }
     }
 
+    /**
+     * @return A counter that increases whenever an adventure is added, removed or changed. Used as the
+     * ETag of the adventure list.
+     */
+    public static long getAdventuresVersion() {
+        return adventuresVersion.get();
+    }
+
+    static void adventuresChanged() {
+        adventuresVersion.incrementAndGet();
+    }
+
     public static List<Adventure> getAllAdventures() {
-        return baseClassIndex.values().stream()
-                .filter(obj -> obj instanceof Adventure)
-                .map(obj -> (Adventure) obj)
-                .sorted(Comparator.comparing(Adventure::getCreationTime))
-                .collect(Collectors.toList());
+        return getAllOf(Adventure.class);
     }
 
+    /**
+     * @return All objects of the given type, in creation order.
+     */
     public static <T extends BaseClass> List<T> getAllOf(Class<T> subclass) {
-        return baseClassIndex.values().stream()
-                .filter(subclass::isInstance)
-                .sorted(Comparator.comparing(BaseClass::getCreationTime))
-                .map(subclass::cast)
-                .collect(Collectors.toList());
+        return getPageOf(subclass, null, Integer.MAX_VALUE).getItems();
+    }
+
+    /**
+     * Lists objects of the given type in creation order, starting after a cursor. Only the index of the
+     * type is walked, and only as far as the page reaches.
+     *
+     * @param subclass The type to list.
+     * @param after    The cursor of the previous page, or null to start from the beginning.
+     * @param limit    The maximum number of objects on the page.
+     * @return The page.
+     * @throws IllegalArgumentException if the limit is not positive.
+     */
+    public static <T extends BaseClass> Page<T> getPageOf(Class<T> subclass, Long after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The page limit must be positive.");
+        }
+        NavigableMap<Long, BaseClass> index = subclass == BaseClass.class ? allInCreationOrder() : typeIndexOf(subclass);
+        if (after != null) {
+            index = index.tailMap(after, false);
+        }
+        List<T> items = new ArrayList<>();
+        Long last = null;
+        for (Map.Entry<Long, BaseClass> entry : index.entrySet()) {
+            if (!subclass.isInstance(entry.getValue())) {
+                continue;
+            }
+            if (items.size() == limit) {
+                return new Page<>(items, last);
+            }
+            items.add(subclass.cast(entry.getValue()));
+            last = entry.getKey();
+        }
+        return new Page<>(items, null);
     }
 
+    private static NavigableMap<Long, BaseClass> allInCreationOrder() {
+        NavigableMap<Long, BaseClass> all = new TreeMap<>();
+        typeIndexes.values().forEach(all::putAll);
+        return all;
+    }
+
+    /**
+     * @return The index of the model type of the given class, i.e. of its ancestor directly below BaseClass.
+     */
+    private static ConcurrentNavigableMap<Long, BaseClass> typeIndexOf(Class<?> type) {
+        Class<?> modelType = type;
+        while (modelType.getSuperclass() != null && modelType.getSuperclass() != BaseClass.class) {
+            modelType = modelType.getSuperclass();
+        }
+        return typeIndexes.computeIfAbsent(modelType, ignored -> new ConcurrentSkipListMap<>());
+    }
 
 }
 
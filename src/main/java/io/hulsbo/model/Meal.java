@@ -1,7 +1,6 @@
 package io.hulsbo.model;
 
-import io.hulsbo.util.model.baseclass.ChildWrapper;
-import java.util.Set;
+import io.hulsbo.util.model.baseclass.FixedPoint;
 import java.util.UUID;
 import io.quarkus.logging.Log;
 
@@ -12,18 +11,16 @@ public UUID putChild(Ingredient newIngredient) {
 }
 
     /**
-     * <p>This function does three things:</p>
+     * <p>This function does two things:</p>
      * <ol>
      *      <li>
      *        Modifies the absWeight (grams) of an ingredient.
      *      </li>
      *      <li>
-     *        Recalculate totalAbsWeight of all the ingredients.
-     *      </li>
-     *      <li>
-     *        Reassess the ratios based on the new totalAbsWeight.
+     *        Sets the ratio weight of the ingredient to the same weight, in whole milligrams.
      *      </li>
      * </ol>
+     * <p>The other ingredients are not touched: all ratios follow from the new total weight when read.</p>
      * @param id The UUID, used as key in the childMap, for the ingredient to be modified
      * @param absWeight the new absWeight (grams) for the ingredient
      */
@@ -34,32 +31,11 @@ public UUID putChild(Ingredient newIngredient) {
         if (absWeight == 0) {
             throw new IllegalArgumentException("The absWeight cannot be 0.");
         }
+        EditScope.lockIfOpen(this);
 
         childMap.get(id).setRecipeWeight(absWeight);
 
-        // Calculate the current total weight
-        double totalAbsWeight = 0.0;
-
-        Set<UUID> keys = childMap.keySet();
-
-        for (UUID key : keys) {
-            totalAbsWeight += childMap.get(key).getRecipeWeight();
-        }
-
-        // update all ratios
-        for (UUID key : keys) {
-            double weightedValue = childMap.get(key).getRecipeWeight() / totalAbsWeight;
-            modifyRatio(key, weightedValue);
-        }
+        // The weight in whole milligrams is the ratio weight; the other ingredients keep theirs
+        modifyChildWeight(id, FixedPoint.toMilligrams(absWeight));
     }
-
-    // Override updateAndPropagate
-    @Override
-    public void updateAndPropagate() {
-        Log.infof("[Meal ID: %s] Entering updateAndPropagate.", getId());
-        this.setNutrientsMapAndWeights(); // Meal-specific update
-        super.updateAndPropagate(); // Propagate upwards
-        Log.infof("[Meal ID: %s] Exiting updateAndPropagate.", getId());
-    }
-
 }
@@ -0,0 +1,287 @@
+package io.hulsbo.model;
+
+import io.quarkus.logging.Log;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks guarding the model graph, one stripe per root object (usually an Adventure).
+ * <p>Every object is guarded by the stripes of its roots, so edits of different adventures never
+ * contend. Writers (edit scopes and async lane runs) hold the write lock of every stripe they touch;
+ * stripes are acquired in index order, and a stripe needed later with a lower index than one already held
+ * is only tried for {@link #OUT_OF_ORDER_TIMEOUT_MS} ms, so writers can never deadlock.</p>
+ * <p>Readers first read optimistically without locking and only fall back to a read lock if a writer
+ * interfered. Each stripe counts its acquisitions and contention, see {@link #getStripeStats()}.</p>
+ * <p>Objects that are shared by several adventures (e.g. a catalog Ingredient) are changed under the
+ * stripes of all of them: an edit scope adds them before the object's first change (see {@link EditScope}).</p>
+ */
+public final class ModelLocks {
+    static final String STRIPES_PROPERTY = "provisioner.locks.stripes";
+    static final long OUT_OF_ORDER_TIMEOUT_MS = 1000;
+
+    private static final Stripe[] stripes = createStripes(readStripeCount());
+    private static final ThreadLocal<Boolean> READING = new ThreadLocal<>();
+
+    private ModelLocks() {
+    }
+
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private final LongAdder writeLocks = new LongAdder();
+        private final LongAdder contendedWriteLocks = new LongAdder();
+        private final LongAdder writeWaitNanos = new LongAdder();
+        private final LongAdder optimisticReads = new LongAdder();
+        private final LongAdder failedOptimisticReads = new LongAdder();
+    }
+
+    /**
+     * The counters of one stripe.
+     */
+    public static final class StripeStats {
+        private final int stripe;
+        private final long writeLocks;
+        private final long contendedWriteLocks;
+        private final double writeWaitMillis;
+        private final long optimisticReads;
+        private final long failedOptimisticReads;
+
+        private StripeStats(int index, Stripe stripe) {
+            this.stripe = index;
+            this.writeLocks = stripe.writeLocks.sum();
+            this.contendedWriteLocks = stripe.contendedWriteLocks.sum();
+            this.writeWaitMillis = stripe.writeWaitNanos.sum() / 1_000_000.0;
+            this.optimisticReads = stripe.optimisticReads.sum();
+            this.failedOptimisticReads = stripe.failedOptimisticReads.sum();
+        }
+
+        public int getStripe() {
+            return stripe;
+        }
+
+        public long getWriteLocks() {
+            return writeLocks;
+        }
+
+        /**
+         * @return How many write locks had to wait for another holder.
+         */
+        public long getContendedWriteLocks() {
+            return contendedWriteLocks;
+        }
+
+        public double getWriteWaitMillis() {
+            return writeWaitMillis;
+        }
+
+        public long getOptimisticReads() {
+            return optimisticReads;
+        }
+
+        /**
+         * @return How many optimistic reads were invalidated by a writer and retried under a read lock.
+         */
+        public long getFailedOptimisticReads() {
+            return failedOptimisticReads;
+        }
+    }
+
+    /**
+     * Write locks held by one writer, released together.
+     */
+    static final class WriteLocks {
+        private final TreeMap<Integer, Long> stamps = new TreeMap<>();
+
+        /**
+         * Acquires the write locks of the given stripes that are not held yet.
+         *
+         * @throws IllegalStateException if an out-of-order stripe could not be locked in time.
+         */
+        void acquire(SortedSet<Integer> indexes) {
+            for (int index : indexes) {
+                if (stamps.containsKey(index)) {
+                    continue;
+                }
+                Stripe stripe = stripes[index];
+                long stamp = stripe.lock.tryWriteLock();
+                if (stamp == 0) {
+                    stripe.contendedWriteLocks.increment();
+                    long start = System.nanoTime();
+                    stamp = stamps.isEmpty() || index > stamps.lastKey()
+                            ? stripe.lock.writeLock()
+                            : tryWriteLockOutOfOrder(stripe, index);
+                    stripe.writeWaitNanos.add(System.nanoTime() - start);
+                }
+                stripe.writeLocks.increment();
+                stamps.put(index, stamp);
+            }
+        }
+
+        private long tryWriteLockOutOfOrder(Stripe stripe, int index) {
+            try {
+                long stamp = stripe.lock.tryWriteLock(OUT_OF_ORDER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (stamp != 0) {
+                    return stamp;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Could not lock model stripe " + index + " within "
+                    + OUT_OF_ORDER_TIMEOUT_MS + " ms; another edit holds it. Please retry.");
+        }
+
+        void releaseAll() {
+            stamps.forEach((index, stamp) -> stripes[index].lock.unlockWrite(stamp));
+            stamps.clear();
+        }
+    }
+
+    /**
+     * Locks the stripes guarding the given objects for writing.
+     */
+    static WriteLocks lockForWrite(Collection<? extends BaseClass> objects) {
+        WriteLocks locks = new WriteLocks();
+        locks.acquire(stripesOf(objects));
+        return locks;
+    }
+
+    /**
+     * Runs a read of the given object without locking if no writer interferes, and otherwise again under
+     * read locks. The reader must not modify the model, and must tolerate seeing inconsistent state on the
+     * optimistic attempt (any exception it throws then triggers the locked retry).
+     * <p>In lazy mode a stale object is refreshed under write locks before each attempt. Getters called by
+     * the reader never refresh (see {@link #isReading()}); an object marked as stale while the read runs
+     * fails validation, and is refreshed again before the next attempt.</p>
+     */
+    public static <T> T read(BaseClass baseClass, Supplier<T> reader) {
+        SortedSet<Integer> indexes = stripesOf(List.of(baseClass));
+        boolean optimistic = indexes.size() == 1;
+        while (true) {
+            refreshIfDirty(baseClass, indexes);
+
+            if (optimistic) {
+                optimistic = false;
+                Stripe stripe = stripes[indexes.first()];
+                stripe.optimisticReads.increment();
+                long stamp = stripe.lock.tryOptimisticRead();
+                if (stamp != 0 && !baseClass.isDirty()) {
+                    READING.set(Boolean.TRUE);
+                    try {
+                        T result = reader.get();
+                        if (stripe.lock.validate(stamp)) {
+                            return result;
+                        }
+                    } catch (RuntimeException e) {
+                        if (stripe.lock.validate(stamp)) {
+                            throw e;
+                        }
+                    } finally {
+                        READING.remove();
+                    }
+                }
+                stripe.failedOptimisticReads.increment();
+                continue;
+            }
+
+            Map<Integer, Long> stamps = new TreeMap<>();
+            READING.set(Boolean.TRUE);
+            try {
+                for (int index : indexes) {
+                    stamps.put(index, stripes[index].lock.readLock());
+                }
+                // Marked as stale between the refresh and the read locks; refresh and lock again.
+                if (!baseClass.isDirty()) {
+                    return reader.get();
+                }
+            } finally {
+                READING.remove();
+                stamps.forEach((index, stamp) -> stripes[index].lock.unlockRead(stamp));
+            }
+        }
+    }
+
+    /**
+     * @return Whether the current thread is running a reader passed to {@link #read}, which must not
+     * refresh stale objects since it holds no write locks.
+     */
+    static boolean isReading() {
+        return READING.get() != null;
+    }
+
+    private static void refreshIfDirty(BaseClass baseClass, SortedSet<Integer> indexes) {
+        if (!baseClass.isDirty()) {
+            return;
+        }
+        WriteLocks locks = new WriteLocks();
+        locks.acquire(indexes);
+        try {
+            baseClass.ensureFresh();
+        } finally {
+            locks.releaseAll();
+        }
+    }
+
+    /**
+     * @return The counters of every stripe that has been used.
+     */
+    public static List<StripeStats> getStripeStats() {
+        List<StripeStats> stats = new ArrayList<>();
+        for (int i = 0; i < stripes.length; i++) {
+            if (stripes[i].writeLocks.sum() > 0 || stripes[i].optimisticReads.sum() > 0) {
+                stats.add(new StripeStats(i, stripes[i]));
+            }
+        }
+        return stats;
+    }
+
+    public static int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @return The indexes of the stripes guarding the given objects, i.e. the stripes of all their roots.
+     */
+    static SortedSet<Integer> stripesOf(Collection<? extends BaseClass> objects) {
+        SortedSet<Integer> indexes = new TreeSet<>();
+        for (BaseClass ancestor : PropagationEngine.collectAncestors(objects)) {
+            if (ancestor.parents.isEmpty()) {
+                indexes.add(stripeOf(ancestor.getId()));
+            }
+        }
+        return indexes;
+    }
+
+    static int stripeOf(UUID rootId) {
+        int hash = rootId.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    private static Stripe[] createStripes(int count) {
+        Stripe[] created = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            created[i] = new Stripe();
+        }
+        return created;
+    }
+
+    /**
+     * Reads the stripe count, rounded up to a power of two so stripes can be picked with a mask.
+     */
+    private static int readStripeCount() {
+        int count = 64;
+        try {
+            count = ConfigProvider.getConfig().getOptionalValue(STRIPES_PROPERTY, Integer.class).orElse(64);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.warnf("Could not read %s (%s), falling back to %d stripes.", STRIPES_PROPERTY, e.getMessage(), count);
+        }
+        int stripeCount = 1;
+        while (stripeCount < count && stripeCount < (1 << 16)) {
+            stripeCount <<= 1;
+        }
+        return stripeCount;
+    }
+}
@@ -0,0 +1,92 @@
+package io.hulsbo.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The children of an object by name, case-insensitively, kept current as children are added, removed and
+ * renamed instead of being rebuilt from the child map.
+ * <p>Entries are sorted by folded name, so a lookup by name or by name prefix is a seek in a skip list.
+ * Each entry key is the folded name followed by the child key, which lets several children share a name;
+ * a lookup by name then returns the one with the lowest key.</p>
+ */
+final class NameIndex {
+    /**
+     * Shared by leaves, which never have children; modifying it throws.
+     */
+    static final NameIndex EMPTY = new NameIndex(Collections.emptyNavigableMap());
+
+    private static final char SEPARATOR = '\u0000';
+
+    private final NavigableMap<String, UUID> entries;
+
+    NameIndex() {
+        this(new ConcurrentSkipListMap<>());
+    }
+
+    private NameIndex(NavigableMap<String, UUID> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Indexes a child under its name. Unnamed children can't be looked up by name and are skipped.
+     */
+    void add(String name, UUID key) {
+        if (name != null) {
+            entries.put(entryKey(name, key), key);
+        }
+    }
+
+    void remove(String name, UUID key) {
+        if (name != null) {
+            entries.remove(entryKey(name, key));
+        }
+    }
+
+    void rename(UUID key, String oldName, String newName) {
+        remove(oldName, key);
+        add(newName, key);
+    }
+
+    /**
+     * @return The key of a child with the given name, ignoring case, or null.
+     */
+    UUID get(String name) {
+        String folded = fold(name) + SEPARATOR;
+        Map.Entry<String, UUID> entry = entries.ceilingEntry(folded);
+        return entry != null && entry.getKey().startsWith(folded) ? entry.getValue() : null;
+    }
+
+    /**
+     * @return The keys of the children whose names start with the prefix, ignoring case, ordered by name.
+     */
+    List<UUID> findByPrefix(String prefix) {
+        String folded = fold(prefix);
+        List<UUID> keys = new ArrayList<>();
+        for (Map.Entry<String, UUID> entry : entries.tailMap(folded, true).entrySet()) {
+            if (!entry.getKey().startsWith(folded)) {
+                break;
+            }
+            keys.add(entry.getValue());
+        }
+        return keys;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static String entryKey(String name, UUID key) {
+        return fold(name) + SEPARATOR + key;
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,114 @@
+package io.hulsbo.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The parents of a model object, held as their handles in the {@link Manager} index (see {@link HandleTable}).
+ * <p>Held in a copy-on-write {@code int} array that is shared and empty for objects without parents and only
+ * grows when the object is shared by several parents, so most objects pay for one small array. Reads never
+ * lock and iterate over the array as it was when they started, resolving each handle as they go.</p>
+ * <p>Parents are dropped from the sets of their children before they are unregistered, so every handle in
+ * a set belongs to a registered object. A parent that is not registered (any more) is not recorded, since
+ * nothing propagates into removed objects.</p>
+ */
+final class ParentSet extends AbstractSet<BaseClass> {
+    private static final int[] EMPTY = new int[0];
+
+    private volatile int[] parents = EMPTY;
+
+    @Override
+    public synchronized boolean add(BaseClass parent) {
+        int handle = parent.handle;
+        int[] current = parents;
+        if (handle < 0 || indexOf(current, handle) >= 0) {
+            return false;
+        }
+        int[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = handle;
+        parents = grown;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object parent) {
+        int[] current = parents;
+        int index = parent instanceof BaseClass ? indexOf(current, ((BaseClass) parent).handle) : -1;
+        if (index < 0) {
+            return false;
+        }
+        if (current.length == 1) {
+            parents = EMPTY;
+            return true;
+        }
+        int[] shrunk = new int[current.length - 1];
+        System.arraycopy(current, 0, shrunk, 0, index);
+        System.arraycopy(current, index + 1, shrunk, index, shrunk.length - index);
+        parents = shrunk;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object parent) {
+        return parent instanceof BaseClass && indexOf(parents, ((BaseClass) parent).handle) >= 0;
+    }
+
+    @Override
+    public Iterator<BaseClass> iterator() {
+        int[] handles = parents;
+        return new Iterator<>() {
+            private int index;
+            private BaseClass next = advance();
+
+            // Skips handles freed by a removal that raced with this iteration.
+            private BaseClass advance() {
+                while (index < handles.length) {
+                    BaseClass parent = Manager.baseClassIndex.at(handles[index++]);
+                    if (parent != null) {
+                        return parent;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public BaseClass next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                BaseClass current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return parents.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return parents.length == 0;
+    }
+
+    private static int indexOf(int[] array, int handle) {
+        if (handle < 0) {
+            return -1;
+        }
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == handle) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
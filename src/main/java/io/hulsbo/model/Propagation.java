@@ -0,0 +1,242 @@
+package io.hulsbo.model;
+
+import io.quarkus.logging.Log;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the settings for how updates are propagated through the model graph.
+ * <p>The mode is read once from the {@code provisioner.propagation.mode} config property
+ * (eager, lazy, async or parallel), and can be changed at runtime with {@link #setMode(PropagationMode)}.</p>
+ * <p>In parallel mode, propagations affecting fewer than {@code provisioner.propagation.parallel-threshold}
+ * objects stay serial, since forking costs more than it saves on small graphs.</p>
+ * <p>A recomputed object whose aggregates changed by no more than {@code provisioner.propagation.change-tolerance}
+ * (relative, for values above one) cuts propagation off: its parents are not recomputed on its account.
+ * How often that happens is counted, see {@link #getStats()}.</p>
+ */
+public final class Propagation {
+    static final String MODE_PROPERTY = "provisioner.propagation.mode";
+    static final String PARALLEL_THRESHOLD_PROPERTY = "provisioner.propagation.parallel-threshold";
+    static final int DEFAULT_PARALLEL_THRESHOLD = 64;
+    static final String CHANGE_TOLERANCE_PROPERTY = "provisioner.propagation.change-tolerance";
+    static final double DEFAULT_CHANGE_TOLERANCE = 1e-9;
+
+    private static volatile PropagationMode mode = readMode();
+    private static volatile int parallelThreshold = readParallelThreshold();
+    private static volatile double changeTolerance = readChangeTolerance();
+    private static final LongAdder runs = new LongAdder();
+    private static final LongAdder recomputations = new LongAdder();
+    private static final LongAdder cutoffs = new LongAdder();
+    private static final LongAdder skippedRecomputations = new LongAdder();
+    private static final List<PropagationListener> listeners = new CopyOnWriteArrayList<>();
+
+    private Propagation() {
+    }
+
+    public static PropagationMode getMode() {
+        return mode;
+    }
+
+    public static void setMode(PropagationMode newMode) {
+        if (newMode == null) {
+            throw new IllegalArgumentException("Propagation mode cannot be null.");
+        }
+        mode = newMode;
+    }
+
+    public static boolean isLazy() {
+        return mode == PropagationMode.LAZY;
+    }
+
+    public static boolean isAsync() {
+        return mode == PropagationMode.ASYNC;
+    }
+
+    public static boolean isParallel() {
+        return mode == PropagationMode.PARALLEL;
+    }
+
+    /**
+     * @return The number of affected objects from which a propagation is run in parallel.
+     */
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public static void setParallelThreshold(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Parallel threshold must be one or more.");
+        }
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * @return The largest change of an aggregate that still counts as unchanged.
+     */
+    public static double getChangeTolerance() {
+        return changeTolerance;
+    }
+
+    public static void setChangeTolerance(double tolerance) {
+        if (!(tolerance >= 0.0)) {
+            throw new IllegalArgumentException("Change tolerance must be zero or more.");
+        }
+        changeTolerance = tolerance;
+    }
+
+    /**
+     * @return Whether an aggregate changed by more than the change tolerance; relative to the values once they
+     * exceed one (e.g. energy densities and weights).
+     */
+    static boolean changed(double before, double after) {
+        double scale = Math.max(1.0, Math.max(Math.abs(before), Math.abs(after)));
+        return Math.abs(after - before) > changeTolerance * scale;
+    }
+
+    /**
+     * The counters of the propagation runs since startup.
+     */
+    public static final class Stats {
+        private final PropagationMode mode;
+        private final long runs;
+        private final long recomputations;
+        private final long cutoffs;
+        private final long skippedRecomputations;
+
+        private Stats() {
+            this.mode = Propagation.mode;
+            this.runs = Propagation.runs.sum();
+            this.recomputations = Propagation.recomputations.sum();
+            this.cutoffs = Propagation.cutoffs.sum();
+            this.skippedRecomputations = Propagation.skippedRecomputations.sum();
+        }
+
+        public PropagationMode getMode() {
+            return mode;
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        public long getRecomputations() {
+            return recomputations;
+        }
+
+        /**
+         * @return How many recomputed objects came out unchanged, so propagation stopped at them.
+         */
+        public long getCutoffs() {
+            return cutoffs;
+        }
+
+        /**
+         * @return How many ancestors were not recomputed because nothing below them changed.
+         */
+        public long getSkippedRecomputations() {
+            return skippedRecomputations;
+        }
+    }
+
+    public static Stats getStats() {
+        return new Stats();
+    }
+
+    static void recordRun(int recomputed, int cutOff, int skipped) {
+        runs.increment();
+        recomputations.add(recomputed);
+        cutoffs.add(cutOff);
+        skippedRecomputations.add(skipped);
+    }
+
+    public static void addListener(PropagationListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Propagation listener cannot be null.");
+        }
+        listeners.add(listener);
+    }
+
+    public static void removeListener(PropagationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tells every listener which objects a propagation run recomputed. A failing listener is logged and
+     * does not affect the others, nor the propagation itself.
+     */
+    static void notifyListeners(Set<BaseClass> recomputed) {
+        for (PropagationListener listener : listeners) {
+            try {
+                listener.propagated(recomputed);
+            } catch (RuntimeException e) {
+                Log.errorf(e, "Propagation listener %s failed: %s", listener, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tells every listener which objects were marked as stale in lazy mode.
+     */
+    static void notifyMarkedStale(Set<BaseClass> stale) {
+        for (PropagationListener listener : listeners) {
+            try {
+                listener.markedStale(stale);
+            } catch (RuntimeException e) {
+                Log.errorf(e, "Propagation listener %s failed: %s", listener, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tells every listener that an object was removed from the model.
+     */
+    static void notifyRemoved(BaseClass removed) {
+        for (PropagationListener listener : listeners) {
+            try {
+                listener.removed(removed);
+            } catch (RuntimeException e) {
+                Log.errorf(e, "Propagation listener %s failed: %s", listener, e.getMessage());
+            }
+        }
+    }
+
+    private static PropagationMode readMode() {
+        try {
+            return ConfigProvider.getConfig()
+                    .getOptionalValue(MODE_PROPERTY, String.class)
+                    .map(value -> PropagationMode.valueOf(value.trim().toUpperCase()))
+                    .orElse(PropagationMode.EAGER);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.warnf("Could not read %s (%s), falling back to EAGER propagation.", MODE_PROPERTY, e.getMessage());
+            return PropagationMode.EAGER;
+        }
+    }
+
+    private static double readChangeTolerance() {
+        try {
+            return ConfigProvider.getConfig()
+                    .getOptionalValue(CHANGE_TOLERANCE_PROPERTY, Double.class)
+                    .filter(value -> value >= 0.0)
+                    .orElse(DEFAULT_CHANGE_TOLERANCE);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.warnf("Could not read %s (%s), falling back to %s.", CHANGE_TOLERANCE_PROPERTY, e.getMessage(), DEFAULT_CHANGE_TOLERANCE);
+            return DEFAULT_CHANGE_TOLERANCE;
+        }
+    }
+
+    private static int readParallelThreshold() {
+        try {
+            return ConfigProvider.getConfig()
+                    .getOptionalValue(PARALLEL_THRESHOLD_PROPERTY, Integer.class)
+                    .filter(value -> value >= 1)
+                    .orElse(DEFAULT_PARALLEL_THRESHOLD);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.warnf("Could not read %s (%s), falling back to %d.", PARALLEL_THRESHOLD_PROPERTY, e.getMessage(), DEFAULT_PARALLEL_THRESHOLD);
+            return DEFAULT_PARALLEL_THRESHOLD;
+        }
+    }
+}
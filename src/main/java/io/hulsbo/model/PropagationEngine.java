@@ -0,0 +1,265 @@
+package io.hulsbo.model;
+
+import io.hulsbo.util.model.baseclass.ChildWrapper;
+import io.quarkus.logging.Log;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Iterative worklist engine used by {@link BaseClass#updateAndPropagate()}.
+ * <p>Instead of walking upwards recursively once per parent, the affected part of the graph is
+ * gathered first, ordered topologically (children before parents) and every node in it is
+ * recomputed exactly once. An object shared by several parents (diamond graphs) therefore costs
+ * one recomputation per ancestor, no matter how many paths lead to it.</p>
+ * <p>In {@link PropagationMode#PARALLEL} mode, runs that affect at least
+ * {@link Propagation#getParallelThreshold()} objects are recomputed level by level: all objects of one
+ * level only depend on earlier levels, so they are recomputed concurrently on the common
+ * {@link java.util.concurrent.ForkJoinPool}, and each level is joined before the next one starts.</p>
+ */
+final class PropagationEngine {
+
+    private PropagationEngine() {
+    }
+
+    /**
+     * Recomputes the seeds and their ancestors, each at most once, children before parents.
+     * <p>An ancestor is only recomputed if one of its children in the run changed: an object whose
+     * aggregates come out the same as before (see {@link Propagation#changed(double, double)}) cuts the
+     * propagation off above it, unless its children or their weights changed (see
+     * {@link BaseClass#recomputeAndDetectChange()}). A no-op edit of a meal therefore stops at the meal.
+     * Only objects that changed, and the ancestors whose serialized state embeds them, get a new version
+     * and are passed to the listeners; the rest of the affected objects are left as they were.</p>
+     *
+     * @param seeds Objects that have been modified.
+     * @throws IllegalStateException if the affected part of the graph contains a cycle.
+     */
+    static void propagate(Collection<? extends BaseClass> seeds) {
+        Set<BaseClass> affected = collectAncestors(seeds);
+        Run run = new Run(seeds);
+        if (Propagation.isParallel() && affected.size() >= Propagation.getParallelThreshold()) {
+            List<List<BaseClass>> levels = topologicalLevels(affected);
+            for (List<BaseClass> level : levels) {
+                recomputeLevel(level, run);
+            }
+            Log.infof("Propagated update from %d object(s) in %d parallel level(s): recomputed %d of %d object(s), %d cut off.",
+                    seeds.size(), levels.size(), run.recomputed, affected.size(), run.cutOff);
+        } else {
+            for (BaseClass node : topologicalOrder(affected)) {
+                if (run.isPending(node)) {
+                    run.completed(node, node.recomputeAndDetectChange());
+                }
+            }
+            Log.infof("Propagated update from %d object(s): recomputed %d of %d object(s), %d cut off.",
+                    seeds.size(), run.recomputed, affected.size(), run.cutOff);
+        }
+        Propagation.recordRun(run.recomputed, run.cutOff, affected.size() - run.recomputed);
+        // An ancestor above a cutoff is not recomputed, but its JSON still embeds the changed object.
+        Set<BaseClass> published = collectAncestors(run.changed);
+        for (BaseClass node : published) {
+            node.bumpVersion();
+        }
+        if (!published.isEmpty()) {
+            Propagation.notifyListeners(Collections.unmodifiableSet(published));
+        }
+    }
+
+    /**
+     * The objects of one propagation run that still have to be recomputed, and what was done so far.
+     * Only touched by the propagating thread.
+     */
+    private static final class Run {
+        private final Set<BaseClass> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<BaseClass> changed = new ArrayList<>();
+        private int recomputed;
+        private int cutOff;
+
+        private Run(Collection<? extends BaseClass> seeds) {
+            this.pending.addAll(seeds);
+        }
+
+        private boolean isPending(BaseClass node) {
+            return pending.contains(node);
+        }
+
+        /**
+         * Records a recomputed object and queues its parents if it changed. Its parents are told about
+         * the child either way, so a change within the tolerance is still picked up the next time they
+         * aggregate.
+         */
+        private void completed(BaseClass node, boolean changed) {
+            recomputed++;
+            notifyParents(node);
+            if (changed) {
+                this.changed.add(node);
+                pending.addAll(node.parents);
+            } else {
+                cutOff++;
+            }
+        }
+    }
+
+    /**
+     * Recomputes the pending objects of one level concurrently and waits for all of them. Parents are
+     * notified afterwards on the calling thread, since objects of one level may share parents.
+     */
+    private static void recomputeLevel(List<BaseClass> level, Run run) {
+        List<BaseClass> pending = new ArrayList<>(level.size());
+        for (BaseClass node : level) {
+            if (run.isPending(node)) {
+                pending.add(node);
+            }
+        }
+        boolean[] changed = new boolean[pending.size()];
+        if (pending.size() == 1) {
+            changed[0] = pending.get(0).recomputeAndDetectChange();
+        } else if (!pending.isEmpty()) {
+            IntStream.range(0, pending.size()).parallel()
+                    .forEach(i -> changed[i] = pending.get(i).recomputeAndDetectChange());
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            run.completed(pending.get(i), changed[i]);
+        }
+    }
+
+    /**
+     * Recomputes every stale object below (and including) the given root, children before parents,
+     * and clears their stale flag. Used by lazy propagation on read. Versions are not bumped here,
+     * since marking an object as stale already did.
+     *
+     * @param root The object being read.
+     * @throws IllegalStateException if the stale part of the graph contains a cycle.
+     */
+    static void refresh(BaseClass root) {
+        Set<BaseClass> stale = collectStaleDescendants(root);
+        if (stale.isEmpty()) {
+            return;
+        }
+        List<BaseClass> order = topologicalOrder(stale);
+        Log.debugf("Refreshing %d stale object(s) below [%s ID: %s].", order.size(), root.getClass().getSimpleName(), root.getId());
+        for (BaseClass node : order) {
+            // Clear the flag first so getters called during recomputation don't re-enter.
+            node.clearDirty();
+            // Every stale object is recomputed anyway; this only resets the change flags like the eager path.
+            node.recomputeAndDetectChange();
+            notifyParents(node);
+        }
+        Propagation.notifyListeners(Collections.unmodifiableSet(stale));
+    }
+
+    /**
+     * Tells the parents of a recomputed object which child changed, for incremental aggregation.
+     */
+    private static void notifyParents(BaseClass node) {
+        for (BaseClass parent : node.parents) {
+            parent.childChanged(node);
+        }
+    }
+
+    /**
+     * Gathers the given objects and all objects reachable from them through parent links.
+     */
+    static Set<BaseClass> collectAncestors(Collection<? extends BaseClass> seeds) {
+        Set<BaseClass> visited = new LinkedHashSet<>();
+        Deque<BaseClass> worklist = new ArrayDeque<>(seeds);
+        while (!worklist.isEmpty()) {
+            BaseClass node = worklist.pop();
+            if (!visited.add(node)) {
+                continue;
+            }
+            worklist.addAll(node.parents);
+        }
+        return visited;
+    }
+
+    private static Set<BaseClass> collectStaleDescendants(BaseClass root) {
+        Set<BaseClass> visited = new LinkedHashSet<>();
+        Deque<BaseClass> worklist = new ArrayDeque<>();
+        worklist.push(root);
+        while (!worklist.isEmpty()) {
+            BaseClass node = worklist.pop();
+            if (!node.isDirty() || !visited.add(node)) {
+                continue;
+            }
+            for (ChildWrapper childWrapper : node.childMap.values()) {
+                worklist.push(childWrapper.getChild());
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Orders the given objects so that every child comes before its parents (Kahn's algorithm).
+     * Only links between objects in the set are considered.
+     *
+     * @throws IllegalStateException if the objects contain a cycle.
+     */
+    static List<BaseClass> topologicalOrder(Set<BaseClass> nodes) {
+        List<BaseClass> order = new ArrayList<>(nodes.size());
+        for (List<BaseClass> level : topologicalLevels(nodes)) {
+            order.addAll(level);
+        }
+        return order;
+    }
+
+    /**
+     * Groups the given objects into levels: the first level holds the objects without children in the
+     * set, and every later level holds the objects whose children are all in earlier levels.
+     * Only links between objects in the set are considered.
+     *
+     * @throws IllegalStateException if the objects contain a cycle.
+     */
+    static List<List<BaseClass>> topologicalLevels(Set<BaseClass> nodes) {
+        Map<BaseClass, Integer> pendingChildren = new LinkedHashMap<>();
+        for (BaseClass node : nodes) {
+            pendingChildren.putIfAbsent(node, 0);
+            for (BaseClass parent : parentsWithin(node, nodes)) {
+                pendingChildren.merge(parent, 1, Integer::sum);
+            }
+        }
+
+        List<BaseClass> ready = new ArrayList<>();
+        pendingChildren.forEach((node, count) -> {
+            if (count == 0) {
+                ready.add(node);
+            }
+        });
+
+        List<List<BaseClass>> levels = new ArrayList<>();
+        int ordered = 0;
+        while (!ready.isEmpty()) {
+            List<BaseClass> level = new ArrayList<>(ready);
+            levels.add(level);
+            ordered += level.size();
+            ready.clear();
+            for (BaseClass node : level) {
+                for (BaseClass parent : parentsWithin(node, nodes)) {
+                    if (pendingChildren.merge(parent, -1, Integer::sum) == 0) {
+                        ready.add(parent);
+                    }
+                }
+            }
+        }
+
+        if (ordered != nodes.size()) {
+            List<String> involved = new ArrayList<>();
+            pendingChildren.forEach((node, count) -> {
+                if (count > 0) {
+                    involved.add(node.getClass().getSimpleName() + " " + node.getId());
+                }
+            });
+            throw new IllegalStateException("Cycle detected in model graph between: " + String.join(", ", involved));
+        }
+        return levels;
+    }
+
+    private static List<BaseClass> parentsWithin(BaseClass node, Set<BaseClass> nodes) {
+        List<BaseClass> result = new ArrayList<>(node.parents.size());
+        for (BaseClass parent : node.parents) {
+            if (nodes.contains(parent)) {
+                result.add(parent);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,30 @@
+package io.hulsbo.model;
+
+import java.util.Set;
+
+/**
+ * Receives the objects recomputed by a propagation run, after the whole run has finished.
+ * <p>Listeners are called on the propagating thread while the model is consistent, so they can read
+ * aggregates directly, but they should return quickly and hand any I/O to another thread.</p>
+ *
+ * @see Propagation#addListener(PropagationListener)
+ */
+@FunctionalInterface
+public interface PropagationListener {
+    void propagated(Set<BaseClass> recomputed);
+
+    /**
+     * Called in lazy mode after objects (and their ancestors) were marked as stale, with the objects newly
+     * marked. Nothing has been recomputed yet; a listener that needs the new aggregates reads them through
+     * {@link ModelLocks#read}, which refreshes them first. Called on the editing thread, which may still hold
+     * its write locks, so listeners must not read here.
+     */
+    default void markedStale(Set<BaseClass> stale) {
+    }
+
+    /**
+     * Called after an object has been removed from the {@link Manager}.
+     */
+    default void removed(BaseClass removed) {
+    }
+}
@@ -0,0 +1,26 @@
+package io.hulsbo.model;
+
+/**
+ * How changes in the model graph are carried up to the parents.
+ */
+public enum PropagationMode {
+    /**
+     * Every mutation recomputes the node and all of its ancestors before returning.
+     */
+    EAGER,
+    /**
+     * A mutation only marks the node and its ancestors as stale. Aggregates are recomputed once,
+     * on the next read (or serialization) of a stale node.
+     */
+    LAZY,
+    /**
+     * A mutation is queued and acknowledged with a version number. Nodes and their ancestors are
+     * recomputed in the background by {@link RecomputeExecutor}, one coalesced run per root object.
+     */
+    ASYNC,
+    /**
+     * Like {@link #EAGER}, but large propagations recompute independent objects concurrently
+     * (see {@link Propagation#getParallelThreshold()}). The caller still waits for the result.
+     */
+    PARALLEL
+}
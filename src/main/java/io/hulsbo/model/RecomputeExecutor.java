@@ -0,0 +1,206 @@
+package io.hulsbo.model;
+
+import io.quarkus.logging.Log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs propagation off the request thread when {@link PropagationMode#ASYNC} is active.
+ * <p>Every root object (usually an Adventure) has a lane. Modified objects are queued on the lanes of
+ * their roots, and each submission gets a version number from a global sequence. A lane is drained by
+ * one task at a time, which propagates everything queued so far in a single {@link PropagationEngine}
+ * run. Changes that arrive while a lane is busy are coalesced into its next run.</p>
+ * <p>A lane run holds the {@link ModelLocks} write locks of every adventure it recomputes, so it never
+ * overlaps with an edit scope or another run on the same adventures.</p>
+ */
+public final class RecomputeExecutor {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final Map<UUID, Lane> LANES = new ConcurrentHashMap<>();
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), new DaemonThreadFactory());
+
+    private RecomputeExecutor() {
+    }
+
+    /**
+     * The pending work and progress of one root object.
+     */
+    private static final class Lane {
+        private final UUID rootId;
+        private final Set<BaseClass> pending = new LinkedHashSet<>(); // guarded by this
+        private boolean scheduled; // guarded by this
+        private long requestedVersion; // guarded by this
+        private long completedVersion; // guarded by this
+
+        private Lane(UUID rootId) {
+            this.rootId = rootId;
+        }
+
+        private synchronized boolean enqueue(Collection<BaseClass> modified, long version) {
+            pending.addAll(modified);
+            requestedVersion = Math.max(requestedVersion, version);
+            if (scheduled) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                List<BaseClass> batch;
+                long upToVersion;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        scheduled = false;
+                        notifyAll();
+                        return;
+                    }
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                    upToVersion = requestedVersion;
+                }
+                ModelLocks.WriteLocks locks = ModelLocks.lockForWrite(batch);
+                try {
+                    // The graph may have been relinked while waiting; add any adventure that joined.
+                    locks.acquire(ModelLocks.stripesOf(batch));
+                } catch (IllegalStateException e) {
+                    locks.releaseAll();
+                    Log.warnf("[Lane %s] %s Requeueing %d object(s).", rootId, e.getMessage(), batch.size());
+                    synchronized (this) {
+                        pending.addAll(batch);
+                    }
+                    continue;
+                }
+                try {
+                    Log.infof("[Lane %s] Recomputing %d queued object(s) up to version %d.", rootId, batch.size(), upToVersion);
+                    PropagationEngine.propagate(batch);
+                } catch (RuntimeException e) {
+                    Log.errorf(e, "[Lane %s] Recomputation up to version %d failed: %s", rootId, upToVersion, e.getMessage());
+                } finally {
+                    locks.releaseAll();
+                }
+                synchronized (this) {
+                    completedVersion = Math.max(completedVersion, upToVersion);
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized boolean awaitVersion(long version, long deadlineNanos) throws InterruptedException {
+            long target = Math.min(version, requestedVersion);
+            while (completedVersion < target) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+
+        private synchronized long requestedVersion() {
+            return requestedVersion;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "model-recompute-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Queues modified objects for recomputation on the lanes of their roots.
+     *
+     * @param modified Objects that have been modified.
+     * @return The version number of this submission.
+     */
+    static long submit(Collection<BaseClass> modified) {
+        long version = SEQUENCE.incrementAndGet();
+        Map<BaseClass, List<BaseClass>> byRoot = new LinkedHashMap<>();
+        for (BaseClass baseClass : modified) {
+            for (BaseClass root : rootsOf(baseClass)) {
+                byRoot.computeIfAbsent(root, key -> new ArrayList<>()).add(baseClass);
+            }
+        }
+        byRoot.forEach((root, objects) -> {
+            Lane lane = LANES.computeIfAbsent(root.getId(), Lane::new);
+            if (lane.enqueue(objects, version)) {
+                POOL.execute(lane::drain);
+            }
+        });
+        return version;
+    }
+
+    /**
+     * @return The latest version submitted for any root of the given object, or 0 if none.
+     */
+    public static long requestedVersion(UUID id) {
+        BaseClass baseClass = Manager.getBaseClass(id);
+        if (baseClass == null) {
+            return 0;
+        }
+        long version = 0;
+        for (BaseClass root : rootsOf(baseClass)) {
+            Lane lane = LANES.get(root.getId());
+            if (lane != null) {
+                version = Math.max(version, lane.requestedVersion());
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Waits until every submission up to the given version that affects the object has been recomputed.
+     *
+     * @return true if the version was reached, false on timeout.
+     */
+    public static boolean awaitVersion(UUID id, long version, long timeoutMillis) {
+        BaseClass baseClass = Manager.getBaseClass(id);
+        if (baseClass == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (BaseClass root : rootsOf(baseClass)) {
+                Lane lane = LANES.get(root.getId());
+                if (lane != null && !lane.awaitVersion(version, deadline)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Drops the lane of a root object that has been removed.
+     */
+    static void forget(UUID rootId) {
+        LANES.remove(rootId);
+    }
+
+    private static List<BaseClass> rootsOf(BaseClass baseClass) {
+        List<BaseClass> roots = new ArrayList<>();
+        for (BaseClass ancestor : PropagationEngine.collectAncestors(List.of(baseClass))) {
+            if (ancestor.parents.isEmpty()) {
+                roots.add(ancestor);
+            }
+        }
+        return roots;
+    }
+}
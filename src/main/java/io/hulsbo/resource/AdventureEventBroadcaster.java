@@ -0,0 +1,337 @@
+package io.hulsbo.resource;
+
+import io.hulsbo.dto.AdventureEventDTO;
+import io.hulsbo.model.Adventure;
+import io.hulsbo.model.BaseClass;
+import io.hulsbo.model.Manager;
+import io.hulsbo.model.ModelLocks;
+import io.hulsbo.model.Propagation;
+import io.hulsbo.model.PropagationListener;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes recomputed adventure state to the clients of {@code GET /adventures/{id}/events}.
+ * <p>After every propagation run that recomputed a watched adventure, a snapshot of its aggregates is
+ * taken on the propagating thread. Snapshots are sent at most once per {@code provisioner.events.min-interval-ms};
+ * a burst of changes in between is coalesced into one event holding only what differs from the
+ * previous event, and nothing is sent if nothing differs. In lazy mode nothing is recomputed on commit, so a
+ * watched adventure that was marked as stale is read through {@link ModelLocks#read} (which refreshes it) when
+ * its event is due, and only watched adventures are refreshed early.</p>
+ * <p>All events of an adventure are built and sent on one scheduler thread, which also owns the state the
+ * diffs are based on. A new client is registered before its initial state is read, so no change is missed,
+ * and that state, read on the scheduler thread, becomes the diff base of every client: older clients first get
+ * what changed up to it. When the adventure is removed, its streams are closed.</p>
+ */
+@ApplicationScoped
+public class AdventureEventBroadcaster implements PropagationListener {
+	private static final double EPSILON = 1e-9;
+
+	@ConfigProperty(name = "provisioner.events.min-interval-ms", defaultValue = "250")
+	long minIntervalMs;
+
+	private final Map<UUID, Stream> streams = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "adventure-events");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private volatile Sse sse;
+
+	/**
+	 * The aggregates of an adventure at one version.
+	 */
+	private static final class State {
+		private final long version;
+		private final double weight;
+		private final double energyDensity;
+		private final Map<UUID, Double> mealWeights;
+		private final Map<UUID, Double> ingredientWeights;
+
+		private State(Adventure adventure) {
+			this.version = adventure.getVersion();
+			this.weight = adventure.getWeight();
+			this.energyDensity = adventure.getEnergyDensity();
+			this.mealWeights = new LinkedHashMap<>(adventure.getMealWeights());
+			this.ingredientWeights = new LinkedHashMap<>(adventure.getIngredientWeights());
+		}
+	}
+
+	/**
+	 * The clients watching one adventure.
+	 */
+	private static final class Stream {
+		private final Adventure adventure;
+		private final UUID adventureId;
+		// Every registered client; only the live ones have had their initial state and get diffs.
+		private final List<SseEventSink> sinks = new CopyOnWriteArrayList<>();
+		private final List<SseEventSink> live = new CopyOnWriteArrayList<>();
+		private State latest; // guarded by this
+		private boolean stale; // guarded by this
+		private boolean scheduled; // guarded by this
+		private long lastEmitNanos; // guarded by this
+		private State emitted; // only touched on the scheduler thread
+
+		private Stream(Adventure adventure) {
+			this.adventure = adventure;
+			this.adventureId = adventure.getId();
+		}
+	}
+
+	@PostConstruct
+	void init() {
+		Propagation.addListener(this);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		Propagation.removeListener(this);
+		scheduler.shutdownNow();
+		for (Stream stream : streams.values()) {
+			stream.sinks.forEach(SseEventSink::close);
+		}
+		streams.clear();
+	}
+
+	/**
+	 * Starts streaming changes of the adventure to the sink, beginning with its full current state.
+	 */
+	void subscribe(Adventure adventure, SseEventSink sink, Sse sse) {
+		this.sse = sse;
+		// Registered atomically with the removal of an emptied stream, so the sink never joins a dropped one.
+		Stream stream = streams.compute(adventure.getId(), (id, existing) -> {
+			Stream joined = existing != null ? existing : new Stream(adventure);
+			joined.sinks.add(sink);
+			return joined;
+		});
+		scheduler.execute(() -> start(stream, sink));
+		Log.infof("Adventure %s now has %d event subscriber(s).", adventure.getId(), stream.sinks.size());
+	}
+
+	/**
+	 * Sends a new client the full current state, after bringing the live clients up to the same state.
+	 * Runs on the scheduler thread; every change after the read reaches {@link #propagated(Set)} or
+	 * {@link #markedStale(Set)} and is emitted after this.
+	 */
+	private void start(Stream stream, SseEventSink sink) {
+		if (Manager.getBaseClass(stream.adventureId) != stream.adventure) {
+			// Removed before the stream was registered, so removed() did not see it.
+			streams.remove(stream.adventureId, stream);
+			for (SseEventSink registered : stream.sinks) {
+				unsubscribe(stream, registered);
+			}
+			return;
+		}
+		State current;
+		try {
+			// Taken like a snapshot read, since edits may be running on the adventure.
+			current = ModelLocks.read(stream.adventure, () -> new State(stream.adventure));
+		} catch (RuntimeException e) {
+			Log.warnf("Could not read adventure %s for a new event subscriber: %s", stream.adventureId, e.getMessage());
+			unsubscribe(stream, sink);
+			return;
+		}
+		if (stream.emitted != null && current.version > stream.emitted.version) {
+			sendToLive(stream, diff(stream.adventureId, stream.emitted, current));
+		}
+		if (stream.emitted == null || current.version > stream.emitted.version) {
+			stream.emitted = current;
+		}
+		stream.live.add(sink);
+		send(stream, sink, diff(stream.adventureId, null, stream.emitted));
+	}
+
+	@Override
+	public void propagated(Set<BaseClass> recomputed) {
+		if (streams.isEmpty()) {
+			return;
+		}
+		for (BaseClass baseClass : recomputed) {
+			if (!(baseClass instanceof Adventure)) {
+				continue;
+			}
+			Stream stream = streams.get(baseClass.getId());
+			if (stream == null) {
+				continue;
+			}
+			State state = new State((Adventure) baseClass);
+			synchronized (stream) {
+				if (stream.latest == null || state.version > stream.latest.version) {
+					stream.latest = state;
+				}
+				schedule(stream);
+			}
+		}
+	}
+
+	/**
+	 * Lazy mode: a watched adventure is due for an event, read (and thereby refreshed) when it is emitted.
+	 */
+	@Override
+	public void markedStale(Set<BaseClass> stale) {
+		if (streams.isEmpty()) {
+			return;
+		}
+		for (BaseClass baseClass : stale) {
+			if (!(baseClass instanceof Adventure)) {
+				continue;
+			}
+			Stream stream = streams.get(baseClass.getId());
+			if (stream == null) {
+				continue;
+			}
+			synchronized (stream) {
+				stream.stale = true;
+				schedule(stream);
+			}
+		}
+	}
+
+	// Called holding the stream's monitor.
+	private void schedule(Stream stream) {
+		if (!stream.scheduled) {
+			stream.scheduled = true;
+			long sinceLastEmit = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stream.lastEmitNanos);
+			long delay = Math.max(0, minIntervalMs - sinceLastEmit);
+			scheduler.schedule(() -> emit(stream), delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Ends the streams of a removed adventure. The sinks are closed on the scheduler thread, after any
+	 * event already queued for them.
+	 */
+	@Override
+	public void removed(BaseClass removed) {
+		if (!(removed instanceof Adventure)) {
+			return;
+		}
+		Stream stream = streams.remove(removed.getId());
+		if (stream == null) {
+			return;
+		}
+		scheduler.execute(() -> {
+			for (SseEventSink sink : stream.sinks) {
+				unsubscribe(stream, sink);
+			}
+			Log.infof("Closed the event streams of removed adventure %s.", stream.adventureId);
+		});
+	}
+
+	private void emit(Stream stream) {
+		State latest;
+		boolean stale;
+		synchronized (stream) {
+			latest = stream.latest;
+			stale = stream.stale;
+			stream.stale = false;
+			stream.scheduled = false;
+			stream.lastEmitNanos = System.nanoTime();
+		}
+		if (stale) {
+			try {
+				latest = ModelLocks.read(stream.adventure, () -> new State(stream.adventure));
+			} catch (RuntimeException e) {
+				Log.warnf("Could not refresh adventure %s for its event subscribers: %s", stream.adventureId, e.getMessage());
+				return;
+			}
+		}
+		// No client has had its initial state yet, or the state is not newer than what the clients have.
+		if (stream.emitted == null || latest == null || latest.version <= stream.emitted.version) {
+			return;
+		}
+		AdventureEventDTO event = diff(stream.adventureId, stream.emitted, latest);
+		stream.emitted = latest;
+		if (isEmpty(event)) {
+			// Recomputed without any watched aggregate changing, e.g. after a rename.
+			return;
+		}
+		sendToLive(stream, event);
+	}
+
+	private void sendToLive(Stream stream, AdventureEventDTO event) {
+		for (SseEventSink sink : stream.live) {
+			send(stream, sink, event);
+		}
+	}
+
+	private void send(Stream stream, SseEventSink sink, AdventureEventDTO event) {
+		if (sink.isClosed()) {
+			unsubscribe(stream, sink);
+			return;
+		}
+		OutboundSseEvent outbound = sse.newEventBuilder()
+				.name("adventure")
+				.id(Long.toString(event.version))
+				.mediaType(MediaType.APPLICATION_JSON_TYPE)
+				.data(AdventureEventDTO.class, event)
+				.build();
+		sink.send(outbound).whenComplete((ignored, error) -> {
+			if (error != null) {
+				Log.debugf("Dropping event subscriber of adventure %s: %s", stream.adventureId, error.getMessage());
+				unsubscribe(stream, sink);
+			}
+		});
+	}
+
+	private void unsubscribe(Stream stream, SseEventSink sink) {
+		stream.live.remove(sink);
+		stream.sinks.remove(sink);
+		if (!sink.isClosed()) {
+			sink.close();
+		}
+		streams.computeIfPresent(stream.adventureId, (id, current) -> current == stream && current.sinks.isEmpty() ? null : current);
+	}
+
+	/**
+	 * Builds an event holding what changed between two states. With no previous state, everything is included.
+	 */
+	private static AdventureEventDTO diff(UUID adventureId, State previous, State current) {
+		AdventureEventDTO event = new AdventureEventDTO();
+		event.id = adventureId;
+		event.version = current.version;
+		if (previous == null || Math.abs(previous.weight - current.weight) > EPSILON) {
+			event.weight = current.weight;
+		}
+		if (previous == null || Math.abs(previous.energyDensity - current.energyDensity) > EPSILON) {
+			event.energyDensity = current.energyDensity;
+		}
+		diffEntries(previous == null ? Map.of() : previous.mealWeights, current.mealWeights, event.mealWeights, event.removedMeals);
+		diffEntries(previous == null ? Map.of() : previous.ingredientWeights, current.ingredientWeights, event.ingredientWeights, event.removedIngredients);
+		return event;
+	}
+
+	private static boolean isEmpty(AdventureEventDTO event) {
+		return event.weight == null && event.energyDensity == null
+				&& event.mealWeights.isEmpty() && event.ingredientWeights.isEmpty()
+				&& event.removedMeals.isEmpty() && event.removedIngredients.isEmpty();
+	}
+
+	private static void diffEntries(Map<UUID, Double> previous, Map<UUID, Double> current, Map<UUID, Double> changed, List<UUID> removed) {
+		current.forEach((key, value) -> {
+			Double old = previous.get(key);
+			if (old == null || Math.abs(old - value) > EPSILON) {
+				changed.put(key, value);
+			}
+		});
+		for (UUID key : previous.keySet()) {
+			if (!current.containsKey(key)) {
+				removed.add(key);
+			}
+		}
+	}
+}
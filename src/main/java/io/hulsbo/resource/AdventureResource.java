@@ -1,20 +1,40 @@
 package io.hulsbo.resource;
 
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import io.hulsbo.dto.AdventurePatchDTO;
+import io.hulsbo.dto.CrewMemberDTO;
 import io.hulsbo.model.Adventure;
+import io.hulsbo.model.BaseClass;
+import io.hulsbo.model.CrewMember;
+import io.hulsbo.model.EditScope;
 import io.hulsbo.model.Manager;
 import io.hulsbo.model.Meal;
 import java.util.UUID;
 import io.quarkus.logging.Log;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Path("/adventures")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class AdventureResource {
+	static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+	@Inject
+	AdventureEventBroadcaster eventBroadcaster;
+
+	@Inject
+	ModelSnapshots snapshots;
 
 	@POST
 	public Response createAdventure(@QueryParam("name") String name) {
@@ -24,7 +44,7 @@ public class AdventureResource {
 			adventure.setName(name);
 		}
 		Log.infof("POST /adventures - Success creating Adventure ID: %s", adventure.getId());
-		return Response.ok(adventure).build();
+		return ModelVersions.withVersion(Response.ok(snapshots.read(adventure)), adventure.getId()).build();
 	}
 
 	@DELETE
@@ -39,24 +59,49 @@ public class AdventureResource {
 	}
 
 	@GET
-	public Response getAllAdventures() {
-		Log.infof("GET /adventures - Entering getAllAdventures");
-		List<Adventure> adventures = Manager.getAllAdventures();
+	public Response getAllAdventures(@QueryParam("after") Long after, @QueryParam("limit") Integer limit, @Context Request request) {
+		Log.infof("GET /adventures?after=%s&limit=%s - Entering getAllAdventures", after, limit);
+		if (limit != null && limit <= 0) {
+			Log.warnf("GET /adventures - Failed: limit must be positive, was %d.", limit);
+			return Response.status(Response.Status.BAD_REQUEST).entity("The limit must be positive.").build();
+		}
+		EntityTag tag = ModelVersions.adventuresTag();
+		Manager.Page<Adventure> page = Manager.getPageOf(Adventure.class, after, limit == null ? Integer.MAX_VALUE : limit);
+		List<Adventure> adventures = page.getItems();
 		Log.infof("GET /adventures - Success returning %d adventures", adventures.size());
-		return Response.ok(adventures).build();
+		Response response = ModelVersions.conditionalOk(request, tag, () -> snapshots.read(adventures));
+		if (page.getNextCursor() == null) {
+			return response;
+		}
+		return Response.fromResponse(response).header(NEXT_CURSOR_HEADER, page.getNextCursor()).build();
 	}
 
 	@GET
 	@Path("/{id}")
-	public Response getAdventure(@PathParam("id") UUID id) {
+	public Response getAdventure(@PathParam("id") UUID id, @QueryParam("awaitVersion") Long awaitVersion, @Context Request request) {
 		Log.infof("GET /adventures/%s - Entering getAdventure", id);
 		Adventure adventure = (Adventure) Manager.getBaseClass(id);
 		if (adventure == null) {
 			Log.warnf("GET /adventures/%s - Failed: Adventure not found.", id);
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
+		ModelVersions.await(id, awaitVersion);
 		Log.infof("GET /adventures/%s - Success", id);
-		return Response.ok(adventure).build();
+		return ModelVersions.conditionalOk(request, ModelVersions.entityTag(adventure), () -> snapshots.read(adventure));
+	}
+
+	@GET
+	@Path("/{id}/events")
+	@Produces(MediaType.SERVER_SENT_EVENTS)
+	public void streamAdventureEvents(@PathParam("id") UUID id, @Context SseEventSink sink, @Context Sse sse) {
+		Log.infof("GET /adventures/%s/events - Entering streamAdventureEvents", id);
+		BaseClass baseAdventure = Manager.getBaseClass(id);
+		if (!(baseAdventure instanceof Adventure)) {
+			Log.warnf("GET /adventures/%s/events - Failed: Adventure not found.", id);
+			throw new NotFoundException("Adventure not found.");
+		}
+		eventBroadcaster.subscribe((Adventure) baseAdventure, sink, sse);
+		Log.infof("GET /adventures/%s/events - Success, streaming", id);
 	}
 
 	// NOTE: Crewmembers are not added to the index currently.
@@ -78,11 +123,23 @@ public class AdventureResource {
 			Log.warnf("POST /adventures/%s/crew - Failed: Adventure not found.", adventureId);
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
+		try {
+		    CrewMember.validateAttributes(gender, activity, strategy);
+		} catch (IllegalArgumentException e) {
+		    Log.warnf("POST /adventures/%s/crew - Failed: %s", adventureId, e.getMessage());
+		    return Response.status(Response.Status.BAD_REQUEST).entity("Failed to add crew member: " + e.getMessage()).build();
+		}
 		try {
 		    // Assuming putCrewMember returns the ID or some identifier of the new member, or throws - Correction: it's void
-		    adventure.putCrewMember(name, age, height, weight, gender, activity, strategy);
+		    try (EditScope tx = Manager.beginEdit(adventureId)) {
+		        tx.getRoot(Adventure.class).putCrewMember(name, age, height, weight, gender, activity, strategy);
+		    }
 		    Log.infof("POST /adventures/%s/crew - Success adding crew member '%s'", adventureId, name); // Log name instead
-		    return Response.ok(adventure).build(); // Returning whole adventure might be excessive?
+		    return ModelVersions.withVersion(Response.ok(snapshots.read(adventure)), adventureId).build();
+		} catch (IllegalArgumentException e) {
+		    // The attributes were validated, so only opening the scope throws it: the adventure was removed meanwhile.
+		    Log.warnf("POST /adventures/%s/crew - Failed: %s", adventureId, e.getMessage());
+		    return Response.status(Response.Status.NOT_FOUND).build();
 		} catch (Exception e) {
 		    Log.errorf(e, "POST /adventures/%s/crew - Failed adding crew member: %s", adventureId, e.getMessage());
             // Consider a more specific error response if possible
@@ -104,9 +161,11 @@ public class AdventureResource {
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
 		try {
-		    adventure.removeCrewMember(crewId);
+		    try (EditScope tx = Manager.beginEdit(adventureId)) {
+		        tx.getRoot(Adventure.class).removeCrewMember(crewId);
+		    }
 		    Log.infof("DELETE /adventures/%s/crew/%s - Success", adventureId, crewId);
-		    return Response.ok().build();
+		    return ModelVersions.withVersion(Response.ok(), adventureId).build();
 		} catch (IllegalArgumentException e) {
             Log.warnf("DELETE /adventures/%s/crew/%s - Failed: %s", adventureId, crewId, e.getMessage());
             return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
@@ -125,14 +184,21 @@ public class AdventureResource {
 			Log.warnf("PUT /adventures/%s/days - Failed: Adventure not found.", id);
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
+		if (days <= 0) {
+			Log.warnf("PUT /adventures/%s/days - Failed: Days must be one or more.", id);
+			return Response.status(Response.Status.BAD_REQUEST).entity("Days must be one or more.").build();
+		}
 
 		try {
-		    adventure.setDays(days);
+		    try (EditScope tx = Manager.beginEdit(id)) {
+		        tx.getRoot(Adventure.class).setDays(days);
+		    }
 		    Log.infof("PUT /adventures/%s/days?days=%d - Success", id, days);
-		    return Response.ok(adventure).build();
+		    return ModelVersions.withVersion(Response.ok(snapshots.read(adventure)), id).build();
 		} catch (IllegalArgumentException e) {
+            // The days were validated, so only opening the scope throws it: the adventure was removed meanwhile.
             Log.warnf("PUT /adventures/%s/days - Failed: %s", id, e.getMessage());
-            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+            return Response.status(Response.Status.NOT_FOUND).build();
         } catch (Exception e) {
             Log.errorf(e, "PUT /adventures/%s/days - Unexpected error: %s", id, e.getMessage());
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Failed to set days: " + e.getMessage()).build();
@@ -152,14 +218,30 @@ public class AdventureResource {
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
 
-		Meal meal = new Meal();
-		if (name != null && !name.isEmpty()) {
-			meal.setName(name);
+		UUID mealId;
+		try (EditScope tx = Manager.beginEdit(adventureId)) {
+			Meal meal = new Meal();
+			if (name != null && !name.isEmpty()) {
+				meal.setName(name);
+			}
+			try {
+				mealId = tx.getRoot(Adventure.class).putChild(meal);
+			} catch (IllegalArgumentException e) {
+				// Rejected before anything changed, e.g. because it would make the adventure its own descendant.
+				Log.warnf("POST /adventures/%s/meals - Failed: %s", adventureId, e.getMessage());
+				return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
+			}
+		} catch (IllegalArgumentException e) {
+			// Only opening the scope throws it here: the adventure was removed since it was looked up.
+			Log.warnf("POST /adventures/%s/meals - Failed: %s", adventureId, e.getMessage());
+			return Response.status(Response.Status.NOT_FOUND).build();
+		} catch (IllegalStateException e) {
+			// A lock the edit needed could not be acquired in time; nothing was changed.
+			Log.warnf("POST /adventures/%s/meals - Failed: %s", adventureId, e.getMessage());
+			return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
 		}
-
-		UUID mealId = adventure.putChild(meal);
 		Log.infof("POST /adventures/%s/meals - Success adding Meal ID: %s", adventureId, mealId);
-		return Response.ok(mealId).build();
+		return ModelVersions.withVersion(Response.ok(mealId), adventureId).build();
 	}
 
 	@DELETE
@@ -176,15 +258,121 @@ public class AdventureResource {
 		}
 
 		try {
-			adventure.removeChild(mealId);
+			try (EditScope tx = Manager.beginEdit(adventureId)) {
+				tx.getRoot(Adventure.class).removeChild(mealId);
+			}
 			Log.infof("DELETE /adventures/%s/meals/%s - Success", adventureId, mealId);
-			return Response.ok().build();
-		} catch (IllegalArgumentException e) {
+			return ModelVersions.withVersion(Response.ok(), adventureId).build();
+		} catch (IllegalArgumentException | NullPointerException e) {
+			// The adventure was removed since it was looked up, or removeChild() found no such meal.
 			Log.warnf("DELETE /adventures/%s/meals/%s - Failed: %s", adventureId, mealId, e.getMessage());
 			return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
 		}
 	}
 
+	@PATCH
+	@Path("/{id}")
+	public Response patchAdventure(@PathParam("id") UUID id, AdventurePatchDTO patch) {
+		Log.infof("PATCH /adventures/%s - Entering patchAdventure", id);
+		BaseClass baseAdventure = Manager.getBaseClass(id);
+		if (!(baseAdventure instanceof Adventure)) {
+			Log.warnf("PATCH /adventures/%s - Failed: Adventure not found.", id);
+			return Response.status(Response.Status.NOT_FOUND).build();
+		}
+		Adventure adventure = (Adventure) baseAdventure;
+		if (patch == null) {
+			return Response.status(Response.Status.BAD_REQUEST).entity("A patch body must be provided.").build();
+		}
+
+		// Validate everything first, so a bad entry leaves the adventure untouched.
+		String error = validateAdventurePatch(adventure, patch);
+		if (error != null) {
+			Log.warnf("PATCH /adventures/%s - Failed: %s", id, error);
+			return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+		}
+
+		try (EditScope tx = Manager.beginEdit(id)) {
+			// Checked again under the locks, since a concurrent edit may have changed the adventure meanwhile.
+			String conflict = validateAdventurePatch(tx.getRoot(Adventure.class), patch);
+			if (conflict != null) {
+				Log.warnf("PATCH /adventures/%s - Failed: Changed by another edit. %s", id, conflict);
+				return Response.status(Response.Status.CONFLICT).entity("The adventure was changed by another edit. " + conflict).build();
+			}
+			if (patch.name != null && !patch.name.isEmpty()) {
+				adventure.setName(patch.name);
+			}
+			if (patch.days != null) {
+				adventure.setDays(patch.days);
+			}
+			if (patch.removeMeals != null) {
+				for (UUID mealId : patch.removeMeals) {
+					adventure.removeChild(mealId);
+				}
+			}
+			if (patch.addMeals != null) {
+				for (String mealName : patch.addMeals) {
+					Meal meal = new Meal();
+					if (mealName != null && !mealName.isEmpty()) {
+						meal.setName(mealName);
+					}
+					adventure.putChild(meal);
+				}
+			}
+			if (patch.removeCrew != null) {
+				for (UUID crewId : patch.removeCrew) {
+					adventure.removeCrewMember(crewId);
+				}
+			}
+			if (patch.addCrew != null) {
+				for (CrewMemberDTO crew : patch.addCrew) {
+					adventure.putCrewMember(crew.name, crew.age, crew.height, crew.weight, crew.gender, crew.activity, crew.strategy);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			// The patch was validated under the locks, so only opening the scope throws it: the adventure was removed.
+			Log.warnf("PATCH /adventures/%s - Failed: %s", id, e.getMessage());
+			return Response.status(Response.Status.NOT_FOUND).build();
+		} catch (Exception e) {
+			Log.errorf(e, "PATCH /adventures/%s - Unexpected error: %s", id, e.getMessage());
+			return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Failed to patch adventure: " + e.getMessage()).build();
+		}
+		Log.infof("PATCH /adventures/%s - Success", id);
+		return ModelVersions.withVersion(Response.ok(snapshots.read(adventure)), id).build();
+	}
+
+	/**
+	 * @return A message describing why the patch cannot be applied to the adventure, or null if it is valid.
+	 */
+	private String validateAdventurePatch(Adventure adventure, AdventurePatchDTO patch) {
+		if (patch.days != null && patch.days <= 0) {
+			return "Days must be one or more.";
+		}
+		if (patch.removeMeals != null) {
+			Set<UUID> seen = new HashSet<>();
+			for (UUID mealId : patch.removeMeals) {
+				if (mealId == null || !adventure.getChildMap().containsKey(mealId)) {
+					return "Meal " + mealId + " does not belong to the adventure.";
+				}
+				if (!seen.add(mealId)) {
+					return "Meal " + mealId + " is listed more than once in removeMeals.";
+				}
+			}
+		}
+		if (patch.addCrew != null) {
+			for (CrewMemberDTO crew : patch.addCrew) {
+				if (crew == null) {
+					return "Crew member entries cannot be null.";
+				}
+				try {
+					CrewMember.validateAttributes(crew.gender, crew.activity, crew.strategy);
+				} catch (IllegalArgumentException e) {
+					return "Invalid crew member '" + crew.name + "': " + e.getMessage();
+				}
+			}
+		}
+		return null;
+	}
+
 	@GET
 	@Path("/{id}/info")
 	public Response getAdventureInfo(@PathParam("id") UUID id) {
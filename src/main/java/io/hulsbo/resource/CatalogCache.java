@@ -0,0 +1,164 @@
+package io.hulsbo.resource;
+
+import io.hulsbo.dto.IngredientDTO;
+import io.hulsbo.entities.IngredientEntity;
+import io.hulsbo.mapper.IngredientMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of catalog ingredients, keyed by id, serving {@code GET /ingredients/{id}} and the
+ * attachment of catalog ingredients to meals without a database round trip.
+ * <p>Entries are kept in access order under a short lock. Once more than
+ * {@code provisioner.catalog.cache-size} ingredients are cached, the least recently used entries are
+ * evicted first. Writers invalidate an id when they change it and again once their transaction has
+ * completed; a load that overlapped an invalidation is returned but not cached, so a stale row is never
+ * kept.</p>
+ * <p>The cache keeps its own copy of every DTO and hands out copies, so callers may modify what they get.</p>
+ */
+@ApplicationScoped
+public class CatalogCache {
+
+	@ConfigProperty(name = "provisioner.catalog.cache-size", defaultValue = "4096")
+	int maxSize;
+
+	@Inject
+	IngredientMapper ingredientMapper;
+
+	private final LinkedHashMap<UUID, IngredientDTO> entries = new LinkedHashMap<>(16, 0.75f, true); // guarded by itself
+	private final AtomicLong invalidationCount = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * The counters of the cache.
+	 */
+	public static final class Stats {
+		private final int size;
+		private final int maxSize;
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+		private final long invalidations;
+
+		private Stats(CatalogCache cache) {
+			this.size = cache.size();
+			this.maxSize = cache.maxSize;
+			this.hits = cache.hits.sum();
+			this.misses = cache.misses.sum();
+			this.evictions = cache.evictions.sum();
+			this.invalidations = cache.invalidationCount.get();
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getInvalidations() {
+			return invalidations;
+		}
+	}
+
+	/**
+	 * @return The catalog ingredient with the given id, loaded from the database on a miss, or null if
+	 * there is none.
+	 */
+	IngredientDTO get(UUID id) {
+		return get(id, key -> IngredientEntity.<IngredientEntity>findByIdOptional(key).map(ingredientMapper::toDTO).orElse(null));
+	}
+
+	IngredientDTO get(UUID id, Function<UUID, IngredientDTO> loader) {
+		IngredientDTO cached;
+		synchronized (entries) {
+			cached = entries.get(id);
+		}
+		if (cached != null) {
+			hits.increment();
+			return copyOf(cached);
+		}
+		misses.increment();
+		long invalidationsBefore = invalidationCount.get();
+		IngredientDTO loaded = loader.apply(id);
+		if (loaded == null) {
+			return null;
+		}
+		synchronized (entries) {
+			// Invalidations count under the same lock, so one that overlapped the load is seen here.
+			if (invalidationCount.get() == invalidationsBefore && !entries.containsKey(id)) {
+				entries.put(id, copyOf(loaded));
+				evictOverflow();
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Drops the cached ingredient with the given id, if any.
+	 */
+	void invalidate(UUID id) {
+		synchronized (entries) {
+			invalidationCount.incrementAndGet();
+			entries.remove(id);
+		}
+	}
+
+	Stats getStats() {
+		return new Stats(this);
+	}
+
+	private int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries beyond the bound. Only called while holding the lock.
+	 */
+	private void evictOverflow() {
+		Iterator<UUID> eldest = entries.keySet().iterator();
+		while (entries.size() > maxSize && eldest.hasNext()) {
+			eldest.next();
+			eldest.remove();
+			evictions.increment();
+		}
+	}
+
+	private static IngredientDTO copyOf(IngredientDTO source) {
+		IngredientDTO copy = new IngredientDTO();
+		copy.id = source.id;
+		copy.name = source.name;
+		copy.nutrientsMap = new LinkedHashMap<>(source.nutrientsMap);
+		copy.energyDensity = source.energyDensity;
+		copy.measurementUnit = source.measurementUnit;
+		copy.pcsWeight = source.pcsWeight;
+		copy.density = source.density;
+		copy.createdByUserId = source.createdByUserId;
+		return copy;
+	}
+}
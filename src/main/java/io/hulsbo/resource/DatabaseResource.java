@@ -2,12 +2,14 @@ package io.hulsbo.resource;
 
 import io.hulsbo.entities.IngredientEntity;
 import io.hulsbo.mapper.IngredientMapper;
-import io.hulsbo.model.Ingredient; // Assuming this is the POJO
 import io.quarkus.logging.Log;
+import io.hulsbo.dto.IngredientDTO;
 import io.hulsbo.dto.IngredientSearchResultDTO;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
@@ -19,7 +21,6 @@ import org.jboss.logging.Logger; // Import Logger
 
 import java.net.URI;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @Path("/ingredients")
@@ -33,6 +34,12 @@ public class DatabaseResource {
     @Inject
     IngredientMapper ingredientMapper;
 
+    @Inject
+    CatalogCache catalogCache;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
     // --- Search Endpoint (GET /ingredients/search?query) ---
     @GET
     @Path("/search")
@@ -61,52 +68,53 @@ public class DatabaseResource {
     @GET
     @Path("/{id}")
     public Response getIngredientById(@PathParam("id") UUID id) {
-        Optional<IngredientEntity> optionalEntity = IngredientEntity.findByIdOptional(id);
 		LOG.info("---- ENTERING getIngredientById with id: " + id + " ----");
-        if (optionalEntity.isEmpty()) {
+        // An unregistered DTO, from the cache or the database; a domain Ingredient is only created when added to a meal.
+        IngredientDTO ingredient = catalogCache.get(id);
+        if (ingredient == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
 
-        IngredientEntity entity = optionalEntity.get();
-		LOG.info("---- entity: " + entity.id + " ----");
-        Ingredient domainObject = ingredientMapper.toDomain(entity);
+		LOG.info("---- EXITING getIngredientById with id: " + id + " ----");
 
-		LOG.info("---- EXITING getIngredientById with id: " + id + " and domainObject: " + domainObject.getId() + " ----");
-
-        // It might be better to return a DTO instead of the full Ingredient domain object
-        // depending on what the frontend needs.
-        return Response.ok(domainObject).build();
+        return Response.ok(ingredient).build();
     }
 
     // --- Save/Update Endpoint (PUT /ingredients/{id}) ---
     @PUT
     @Path("/{id}")
     @Transactional
-    public Response createOrUpdateIngredient(@PathParam("id") UUID id, Ingredient ingredientFromBody, @Context UriInfo uriInfo) {
+    public Response createOrUpdateIngredient(@PathParam("id") UUID id, IngredientDTO ingredientFromBody, @Context UriInfo uriInfo) {
 
         IngredientEntity existingEntity = IngredientEntity.findById(id);
-
-        if (existingEntity != null) {
-            // --- Update Existing Ingredient ---
-            Log.info("Updating since entity is not null: " + existingEntity);
-            ingredientMapper.updateEntity(ingredientFromBody, existingEntity);
-
-            // Panache handles the update commit automatically due to @Transactional
-            Ingredient updatedDomainObject = ingredientMapper.toDomain(existingEntity); // Map back for response
-
-            return Response.ok(updatedDomainObject).build();
-        } else {
-            Log.info("Creating new entity since entity is null: " + existingEntity);
-
-            // --- Create New Ingredient ---
-            IngredientEntity newEntity = ingredientMapper.toEntity(ingredientFromBody);
-            newEntity.id = id; // Set the ID provided in the path
-            newEntity.density_g_ml = null;
-            newEntity.persist();
-
-            Ingredient createdDomainObject = ingredientMapper.toDomain(newEntity); // Map back for response
-            URI createdUri = uriInfo.getAbsolutePathBuilder().path(id.toString()).build();
-            return Response.created(createdUri).entity(createdDomainObject).build();
+        invalidateCached(id);
+
+        try {
+            if (existingEntity != null) {
+                // --- Update Existing Ingredient ---
+                Log.info("Updating since entity is not null: " + existingEntity);
+                ingredientMapper.updateEntity(ingredientFromBody, existingEntity);
+
+                // Panache handles the update commit automatically due to @Transactional
+                IngredientDTO updated = ingredientMapper.toDTO(existingEntity); // Map back for response
+
+                return Response.ok(updated).build();
+            } else {
+                Log.info("Creating new entity since entity is null: " + existingEntity);
+
+                // --- Create New Ingredient ---
+                IngredientEntity newEntity = ingredientMapper.toEntity(ingredientFromBody);
+                newEntity.id = id; // Set the ID provided in the path
+                newEntity.density_g_ml = null;
+                newEntity.persist();
+
+                IngredientDTO created = ingredientMapper.toDTO(newEntity); // Map back for response
+                URI createdUri = uriInfo.getAbsolutePathBuilder().path(id.toString()).build();
+                return Response.created(createdUri).entity(created).build();
+            }
+        } catch (IllegalArgumentException e) {
+            Log.warn("Could not save ingredient " + id + ": " + e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
         }
     }
 
@@ -118,6 +126,7 @@ public class DatabaseResource {
 
         IngredientEntity existingEntity = IngredientEntity.findById(id);
         if (existingEntity != null) {
+            invalidateCached(id);
             IngredientEntity.deleteById(id);
             Log.info("Ingredient " + id + " was successfully deleted.");
             return Response.noContent().build();
@@ -126,4 +135,22 @@ public class DatabaseResource {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Drops the cached ingredient now, and again once the transaction has completed, so a reader that
+	 * loaded the row in between cannot keep the uncommitted or old version cached.
+	 */
+	private void invalidateCached(UUID id) {
+		catalogCache.invalidate(id);
+		transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				catalogCache.invalidate(id);
+			}
+		});
+	}
+}
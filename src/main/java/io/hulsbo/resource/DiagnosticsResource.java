@@ -0,0 +1,65 @@
+package io.hulsbo.resource;
+
+import io.hulsbo.model.ModelLocks;
+import io.hulsbo.model.Propagation;
+import io.quarkus.logging.Log;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Path("/diagnostics")
+@Produces(MediaType.APPLICATION_JSON)
+public class DiagnosticsResource {
+
+	@Inject
+	CatalogCache catalogCache;
+
+	@Inject
+	ModelSweeper modelSweeper;
+
+	@GET
+	@Path("/locks")
+	public Response getLockStats() {
+		Log.infof("GET /diagnostics/locks - Entering getLockStats");
+		List<ModelLocks.StripeStats> stripes = ModelLocks.getStripeStats();
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("stripeCount", ModelLocks.getStripeCount());
+		stats.put("stripes", stripes);
+		Log.infof("GET /diagnostics/locks - Success returning %d used stripes", stripes.size());
+		return Response.ok(stats).build();
+	}
+
+	@GET
+	@Path("/catalog-cache")
+	public Response getCatalogCacheStats() {
+		Log.infof("GET /diagnostics/catalog-cache - Entering getCatalogCacheStats");
+		CatalogCache.Stats stats = catalogCache.getStats();
+		Log.infof("GET /diagnostics/catalog-cache - Success, %d of %d ingredients cached", stats.getSize(), stats.getMaxSize());
+		return Response.ok(stats).build();
+	}
+
+	@GET
+	@Path("/sweeper")
+	public Response getSweeperStats() {
+		Log.infof("GET /diagnostics/sweeper - Entering getSweeperStats");
+		ModelSweeper.Stats stats = modelSweeper.getStats();
+		Log.infof("GET /diagnostics/sweeper - Success after %d sweeps", stats.getSweeps());
+		return Response.ok(stats).build();
+	}
+
+	@GET
+	@Path("/propagation")
+	public Response getPropagationStats() {
+		Log.infof("GET /diagnostics/propagation - Entering getPropagationStats");
+		Propagation.Stats stats = Propagation.getStats();
+		Log.infof("GET /diagnostics/propagation - Success, %d recomputations and %d cutoffs", stats.getRecomputations(), stats.getCutoffs());
+		return Response.ok(stats).build();
+	}
+}
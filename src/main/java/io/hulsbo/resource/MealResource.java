@@ -1,13 +1,22 @@
 package io.hulsbo.resource;
 
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import java.util.UUID;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Request;
 import io.hulsbo.util.model.MeasurementUnit;
+import io.hulsbo.util.model.baseclass.ChildWrapper;
+import io.hulsbo.util.model.baseclass.Nutrient;
+import io.hulsbo.util.model.baseclass.NutrientsMap;
+import io.hulsbo.dto.IngredientChangeDTO;
+import io.hulsbo.dto.IngredientDTO;
+import io.hulsbo.mapper.IngredientMapper;
 import io.hulsbo.model.BaseClass;
+import io.hulsbo.model.EditScope;
 import io.hulsbo.model.Meal;
 import io.hulsbo.model.Ingredient;
 import io.hulsbo.model.Manager;
@@ -16,32 +25,45 @@ import io.quarkus.logging.Log;
 import java.util.Map;
 import java.util.List;
 import java.util.HashMap;
+import java.util.Objects;
 
 @Path("/meals")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class MealResource {
 
+	@Inject
+	ModelSnapshots snapshots;
+
+	@Inject
+	IngredientMapper ingredientMapper;
+
+	@Inject
+	CatalogCache catalogCache;
+
 	@POST
 	public Response createMeal(@QueryParam("name") String name) {
 		Log.infof("POST /meals?name=%s - Entering createMeal", name);
 		Meal meal = new Meal();
+		// Created on its own rather than inside an adventure, so it must not be reclaimed as an orphan.
+		Manager.pin(meal);
 		meal.setName(name);
 		Log.infof("POST /meals?name=%s - Success creating Meal ID: %s", name, meal.getId());
-		return Response.ok(meal).build();
+		return ModelVersions.withVersion(Response.ok(snapshots.read(meal)), meal.getId()).build();
 	}
 
 	@GET
 	@Path("/{id}")
-	public Response getMeal(@PathParam("id") UUID id) {
+	public Response getMeal(@PathParam("id") UUID id, @QueryParam("awaitVersion") Long awaitVersion, @Context Request request) {
 		Log.infof("GET /meals/%s - Entering getMeal", id);
 		Meal meal = (Meal) Manager.getBaseClass(id);
 		if (meal == null) {
 			Log.warnf("GET /meals/%s - Failed: Meal not found.", id);
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
+		ModelVersions.await(id, awaitVersion);
 		Log.infof("GET /meals/%s - Success", id);
-		return Response.ok(meal).build();
+		return ModelVersions.conditionalOk(request, ModelVersions.entityTag(meal), () -> snapshots.read(meal));
 	}
 
 	@POST
@@ -65,18 +87,52 @@ public class MealResource {
 			return Response.status(Response.Status.NOT_FOUND).entity(errorMap).build();
 		}
 
-		if (ingredientId != null) {
-			Ingredient ingredient = (Ingredient) Manager.getBaseClass(ingredientId);
-			ingredientId = meal.putChild(ingredient);
-			Log.infof("POST /meals/%s/ingredients - Success adding existing Ingredient with ID: %s", mealId, ingredientId);
-			return Response.ok(ingredientId).build();
-		} else {
-			Ingredient ingredient = new Ingredient();
-			ingredient.setName(name);
-			ingredientId = meal.putChild(ingredient);
-			Log.infof("POST /meals/%s/ingredients - Success adding Ingredient ID: %s", mealId, ingredientId);
-			return Response.ok(ingredientId).build();
+		// A catalog ingredient is only materialized as a registered domain Ingredient once added to a meal.
+		// It is fetched before the scope, so the database is never queried while holding locks.
+		IngredientDTO catalogIngredient = ingredientId != null && Manager.getBaseClass(ingredientId) == null
+				? catalogCache.get(ingredientId)
+				: null;
+
+		boolean addingExisting = ingredientId != null;
+		try (EditScope tx = Manager.beginEdit(mealId)) {
+			Ingredient ingredient;
+			if (addingExisting) {
+				// Looked up or materialized under the meal's write locks, and only ever registered once.
+				ingredient = Manager.getOrCreate(ingredientId, Ingredient.class, () -> ingredientMapper.toDomain(catalogIngredient));
+				if (ingredient == null) {
+					Map<String, String> errorMap = Map.of("message", "Ingredient with ID: \"" + ingredientId + "\" not found.");
+					Log.errorf("POST /meals/%s/ingredient - Failed: %s", mealId, errorMap.get("message"));
+					return Response.status(Response.Status.NOT_FOUND).entity(errorMap).build();
+				}
+			} else {
+				ingredient = new Ingredient();
+				ingredient.setName(name);
+			}
+			try {
+				ingredientId = tx.getRoot(Meal.class).putChild(ingredient);
+			} catch (IllegalArgumentException e) {
+				// Rejected before anything changed, e.g. because it would make the meal its own descendant.
+				Map<String, String> errorMap = Map.of("message", e.getMessage());
+				Log.warnf("POST /meals/%s/ingredient - Failed: %s", mealId, e.getMessage());
+				return Response.status(Response.Status.CONFLICT).entity(errorMap).build();
+			}
+			if (addingExisting) {
+				Log.infof("POST /meals/%s/ingredients - Success adding existing Ingredient with ID: %s", mealId, ingredientId);
+			} else {
+				Log.infof("POST /meals/%s/ingredients - Success adding Ingredient ID: %s", mealId, ingredientId);
+			}
+		} catch (IllegalArgumentException e) {
+			// Only opening the scope throws it here: the meal was removed since it was looked up.
+			Map<String, String> errorMap = Map.of("message", "Meal with ID: \"" + mealId + "\" not found.");
+			Log.warnf("POST /meals/%s/ingredient - Failed: %s", mealId, e.getMessage());
+			return Response.status(Response.Status.NOT_FOUND).entity(errorMap).build();
+		} catch (IllegalStateException e) {
+			// A lock of an adventure sharing the ingredient could not be acquired in time; nothing was changed.
+			Map<String, String> errorMap = Map.of("message", e.getMessage());
+			Log.warnf("POST /meals/%s/ingredient - Failed: %s", mealId, e.getMessage());
+			return Response.status(Response.Status.CONFLICT).entity(errorMap).build();
 		}
+		return ModelVersions.withVersion(Response.ok(ingredientId), mealId).build();
 	}
 
 	@DELETE
@@ -92,10 +148,13 @@ public class MealResource {
 		}
 
 		try {
-			meal.removeChild(ingredientId);
+			try (EditScope tx = Manager.beginEdit(mealId)) {
+				tx.getRoot(Meal.class).removeChild(ingredientId);
+			}
 			Log.infof("DELETE /meals/%s/ingredients/%s - Success", mealId, ingredientId);
-			return Response.ok().build();
-		} catch (IllegalArgumentException e) {
+			return ModelVersions.withVersion(Response.ok(), mealId).build();
+		} catch (IllegalArgumentException | NullPointerException e) {
+			// The meal was removed since it was looked up, or removeChild() found no such ingredient.
 			Log.warnf("DELETE /meals/%s/ingredients/%s - Failed: %s", mealId, ingredientId, e.getMessage());
 			return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
 		}
@@ -162,17 +221,11 @@ public class MealResource {
 			boolean nutrientsModified = !nutrientUpdates.isEmpty();
 			boolean weightModified = weight != null;
 
-			boolean measurementUnitModified = false;
-			boolean pcsWeightModified = false;
-			boolean densityModified = false;
-
+			// Validate everything before opening the edit scope, so a bad parameter leaves the ingredient untouched.
+			MeasurementUnit unit = null;
 			if (measurementUnitStr != null && !measurementUnitStr.trim().isEmpty()) {
 				try {
-					MeasurementUnit unit = MeasurementUnit.valueOf(measurementUnitStr.toUpperCase());
-					if (ingredient.getMeasurementUnit() != unit) {
-						ingredient.setMeasurementUnit(unit);
-						measurementUnitModified = true;
-					}
+					unit = MeasurementUnit.valueOf(measurementUnitStr.toUpperCase());
 				} catch (IllegalArgumentException e) {
 					Map<String, String> errorMap = Map.of("message", "Invalid measurementUnit value: " + measurementUnitStr);
 					Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Invalid measurementUnit (%s)", mealId, ingredientId, measurementUnitStr);
@@ -180,88 +233,113 @@ public class MealResource {
 				}
 			}
 
-			if (pcsWeightParamPresent) {
-				if (pcsWeightStr == null || pcsWeightStr.trim().isEmpty() || pcsWeightStr.equalsIgnoreCase("null")) {
-					if (ingredient.getPcsWeight() != null) {
-						ingredient.setPcsWeight(null);
-						pcsWeightModified = true;
-					}
-				} else {
-					try {
-						Double pcsWeightValue = Double.parseDouble(pcsWeightStr);
-						if (pcsWeightValue <= 0) {
-							Map<String, String> errorMap = Map.of("message", "pcsWeight must be greater than 0.");
-							Log.warnf("PUT /meals/%s/ingredients/%s - Failed: pcsWeight <= 0 (%s)", mealId, ingredientId, pcsWeightValue);
-							return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
-						}
-						if (ingredient.getPcsWeight() == null || !ingredient.getPcsWeight().equals(pcsWeightValue)) {
-							ingredient.setPcsWeight(pcsWeightValue);
-							pcsWeightModified = true;
-						}
-					} catch (NumberFormatException e) {
-						Map<String, String> errorMap = Map.of("message", "Invalid number format for pcsWeight: " + pcsWeightStr);
-						Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Invalid pcsWeight format (%s)", mealId, ingredientId, pcsWeightStr);
-						return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
-					}
+			Double pcsWeightValue = null;
+			if (pcsWeightParamPresent && !(pcsWeightStr == null || pcsWeightStr.trim().isEmpty() || pcsWeightStr.equalsIgnoreCase("null"))) {
+				try {
+					pcsWeightValue = Double.parseDouble(pcsWeightStr);
+				} catch (NumberFormatException e) {
+					Map<String, String> errorMap = Map.of("message", "Invalid number format for pcsWeight: " + pcsWeightStr);
+					Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Invalid pcsWeight format (%s)", mealId, ingredientId, pcsWeightStr);
+					return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
+				}
+				if (pcsWeightValue <= 0) {
+					Map<String, String> errorMap = Map.of("message", "pcsWeight must be greater than 0.");
+					Log.warnf("PUT /meals/%s/ingredients/%s - Failed: pcsWeight <= 0 (%s)", mealId, ingredientId, pcsWeightValue);
+					return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
 				}
 			}
 
+			Double densityValue = null;
 			if (densityStr != null && !densityStr.trim().isEmpty()) {
 				try {
-					Double densityValue = Double.parseDouble(densityStr);
-					if (densityValue <= 0) {
-						Map<String, String> errorMap = Map.of("message", "Density must be greater than 0.");
-						Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Density <= 0 (%s)", mealId, ingredientId, densityValue);
-						return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
-					}
-					if (ingredient.getDensity() == null || !ingredient.getDensity().equals(densityValue)) {
-						ingredient.setDensity(densityValue);
-						densityModified = true;
-					}
+					densityValue = Double.parseDouble(densityStr);
 				} catch (NumberFormatException e) {
 					Map<String, String> errorMap = Map.of("message", "Invalid number format for density: " + densityStr);
 					Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Invalid density format (%s)", mealId, ingredientId, densityStr);
 					return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
 				}
-			}
-
-			try {
-				if (nutrientsModified) {
-					ingredient.setNutrientRatios(nutrientUpdates);
+				if (densityValue <= 0) {
+					Map<String, String> errorMap = Map.of("message", "Density must be greater than 0.");
+					Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Density <= 0 (%s)", mealId, ingredientId, densityValue);
+					return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
 				}
-			} catch (IllegalArgumentException e) {
-				Map<String, String> errorMap = Map.of("message", e.getMessage());
-				Log.warnf("PUT /meals/%s/ingredients/%s - Failed setting nutrients: %s", mealId, ingredientId, e.getMessage());
-				return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
 			}
 
-			if (weightModified) {
-				if (weight < 0) {
-					Map<String, String> errorMap = Map.of("message", "Weight cannot be negative.");
-					Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Negative weight provided (%s).", mealId, ingredientId, weight);
-					return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
-				}
+			if (nutrientsModified) {
 				try {
-					meal.modifyWeightOfIngredient(ingredientId, weight);
+					ingredient.validateNutrientRatios(nutrientUpdates);
 				} catch (IllegalArgumentException e) {
 					Map<String, String> errorMap = Map.of("message", e.getMessage());
-					Log.warnf("PUT /meals/%s/ingredients/%s - Failed modifying weight: %s", mealId, ingredientId, e.getMessage());
+					Log.warnf("PUT /meals/%s/ingredients/%s - Failed setting nutrients: %s", mealId, ingredientId, e.getMessage());
 					return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
 				}
 			}
 
-			if (nutrientsModified) {
-				ingredient.normalizeNutrientRatiosAndPropagate();
-			} else if (weightModified) {
-				meal.updateAndPropagate();
+			if (weightModified && weight <= 0) {
+				Map<String, String> errorMap = Map.of("message", weight < 0 ? "Weight cannot be negative." : "Weight cannot be 0.");
+				Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Weight not positive (%s).", mealId, ingredientId, weight);
+				return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
 			}
 
-			if (densityModified && !nutrientsModified && !weightModified) {
-				ingredient.updateAndPropagate();
+			// Apply all changes in one edit scope, so the meal and its ancestors are recomputed once.
+			boolean densityModified = false;
+			try (EditScope tx = Manager.beginEdit(mealId)) {
+				// The ingredient may be shared with other adventures; their locks are taken before anything changes.
+				tx.lock(ingredient);
+				// Checked again under the locks: a concurrent edit may have removed the ingredient or changed its nutrients.
+				if (!meal.getChildMap().containsKey(ingredientId)) {
+					Map<String, String> errorMap = Map.of("message", "Ingredient was removed from the meal by another edit.");
+					Log.warnf("PUT /meals/%s/ingredients/%s - Failed: Ingredient removed concurrently.", mealId, ingredientId);
+					return Response.status(Response.Status.CONFLICT).entity(errorMap).build();
+				}
+				if (nutrientsModified) {
+					try {
+						ingredient.validateNutrientRatios(nutrientUpdates);
+					} catch (IllegalArgumentException e) {
+						Map<String, String> errorMap = Map.of("message", "Nutrients were changed by another edit: " + e.getMessage());
+						Log.warnf("PUT /meals/%s/ingredients/%s - Failed: %s", mealId, ingredientId, errorMap.get("message"));
+						return Response.status(Response.Status.CONFLICT).entity(errorMap).build();
+					}
+				}
+				if (unit != null && ingredient.getMeasurementUnit() != unit) {
+					ingredient.setMeasurementUnit(unit);
+				}
+				if (pcsWeightParamPresent && !Objects.equals(ingredient.getPcsWeight(), pcsWeightValue)) {
+					ingredient.setPcsWeight(pcsWeightValue);
+				}
+				if (densityValue != null && !densityValue.equals(ingredient.getDensity())) {
+					ingredient.setDensity(densityValue);
+					densityModified = true;
+				}
+				if (nutrientsModified) {
+					ingredient.setNutrientRatios(nutrientUpdates);
+				}
+				if (weightModified) {
+					meal.modifyWeightOfIngredient(ingredientId, weight);
+				}
+
+				if (nutrientsModified) {
+					ingredient.normalizeNutrientRatiosAndPropagate();
+				} else if (weightModified) {
+					meal.updateAndPropagate();
+				}
+
+				if (densityModified && !nutrientsModified && !weightModified) {
+					ingredient.updateAndPropagate();
+				}
 			}
 
 			Log.infof("PUT /meals/%s/ingredients/%s - Success (unit: %s, pcsW: %s, density: %s)", mealId, ingredientId, ingredient.getMeasurementUnit(), ingredient.getPcsWeight(), ingredient.getDensity());
-			return Response.ok(ingredient).build();
+			return ModelVersions.withVersion(Response.ok(snapshots.read(ingredient)), mealId).build();
+		} catch (IllegalArgumentException e) {
+			// Everything else was validated, so only opening the scope throws it: the meal was removed meanwhile.
+			Map<String, String> errorMap = Map.of("message", "Meal not found.");
+			Log.warnf("PUT /meals/%s/ingredients/%s - Failed: %s", mealId, ingredientId, e.getMessage());
+			return Response.status(Response.Status.NOT_FOUND).entity(errorMap).build();
+		} catch (IllegalStateException e) {
+			Map<String, String> errorMap = Map.of("message", e.getMessage());
+			Log.warnf("PUT /meals/%s/ingredients/%s - Failed: %s", mealId, ingredientId, e.getMessage());
+			return Response.status(Response.Status.CONFLICT).entity(errorMap).build();
 		} catch (Exception e) {
 			Log.errorf(e, "PUT /meals/%s/ingredients/%s - Unexpected server error: %s", mealId, ingredientId, e.getMessage());
 			Map<String, String> errorMap = Map.of("message", "An unexpected server error occurred: " + e.getMessage());
@@ -269,6 +347,158 @@ public class MealResource {
 		}
 	}
 
+	@PATCH
+	@Path("/{id}/ingredients")
+	public Response modifyIngredients(@PathParam("id") UUID mealId, List<IngredientChangeDTO> changes) {
+		Log.infof("PATCH /meals/%s/ingredients - Entering modifyIngredients with %d change(s)", mealId, changes == null ? 0 : changes.size());
+		if (changes == null || changes.isEmpty()) {
+			Map<String, String> errorMap = Map.of("message", "At least one change must be provided.");
+			Log.warnf("PATCH /meals/%s/ingredients - Failed: %s", mealId, errorMap.get("message"));
+			return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
+		}
+		BaseClass baseMeal = Manager.getBaseClass(mealId);
+		if (!(baseMeal instanceof Meal)) {
+			Map<String, String> errorMap = Map.of("message", "Meal not found.");
+			Log.warnf("PATCH /meals/%s/ingredients - Failed: Meal not found.", mealId);
+			return Response.status(Response.Status.NOT_FOUND).entity(errorMap).build();
+		}
+		Meal meal = (Meal) baseMeal;
+
+		// Validate every change first, so a bad entry leaves the meal untouched.
+		String error = validateIngredientChanges(meal, changes);
+		if (error != null) {
+			Map<String, String> errorMap = Map.of("message", error);
+			Log.warnf("PATCH /meals/%s/ingredients - Failed: %s", mealId, error);
+			return Response.status(Response.Status.BAD_REQUEST).entity(errorMap).build();
+		}
+
+		try (EditScope tx = Manager.beginEdit(mealId)) {
+			// Ingredients may be shared with other adventures; all of their locks are taken before any change.
+			for (IngredientChangeDTO change : changes) {
+				ChildWrapper childWrapper = meal.getChildMap().get(change.ingredientId);
+				if (childWrapper != null) {
+					tx.lock(childWrapper.getChild());
+				}
+			}
+			// Checked again under the locks, since a concurrent edit may have removed an ingredient or changed
+			// its nutrients after the first check.
+			String conflict = validateIngredientChanges(meal, changes);
+			if (conflict != null) {
+				Map<String, String> errorMap = Map.of("message", "The meal was changed by another edit. " + conflict);
+				Log.warnf("PATCH /meals/%s/ingredients - Failed: %s", mealId, errorMap.get("message"));
+				return Response.status(Response.Status.CONFLICT).entity(errorMap).build();
+			}
+			for (IngredientChangeDTO change : changes) {
+				applyIngredientChange(meal, change);
+			}
+		} catch (IllegalArgumentException e) {
+			// Every change was validated under the locks, so only opening the scope throws it: the meal was removed.
+			Map<String, String> errorMap = Map.of("message", "Meal not found.");
+			Log.warnf("PATCH /meals/%s/ingredients - Failed: %s", mealId, e.getMessage());
+			return Response.status(Response.Status.NOT_FOUND).entity(errorMap).build();
+		} catch (IllegalStateException e) {
+			Map<String, String> errorMap = Map.of("message", e.getMessage());
+			Log.warnf("PATCH /meals/%s/ingredients - Failed: %s", mealId, e.getMessage());
+			return Response.status(Response.Status.CONFLICT).entity(errorMap).build();
+		}
+		Log.infof("PATCH /meals/%s/ingredients - Success applying %d change(s)", mealId, changes.size());
+		return ModelVersions.withVersion(Response.ok(snapshots.read(meal)), mealId).build();
+	}
+
+	/**
+	 * Validates a batch of changes in order. Nutrient changes are checked against the ratios left by earlier
+	 * changes to the same ingredient.
+	 *
+	 * @return A message naming the first invalid change and why, or null if all of them are valid.
+	 */
+	private String validateIngredientChanges(Meal meal, List<IngredientChangeDTO> changes) {
+		Map<UUID, NutrientsMap> nutrientPreviews = new HashMap<>();
+		for (int i = 0; i < changes.size(); i++) {
+			String error = validateIngredientChange(meal, changes.get(i), nutrientPreviews);
+			if (error != null) {
+				return "Change " + i + ": " + error;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param nutrientPreviews The nutrient ratios of each ingredient after the changes validated so far;
+	 *                         updated with this change if it is valid.
+	 * @return A message describing why the change cannot be applied to the meal, or null if it is valid.
+	 */
+	private String validateIngredientChange(Meal meal, IngredientChangeDTO change, Map<UUID, NutrientsMap> nutrientPreviews) {
+		if (change == null || change.ingredientId == null) {
+			return "ingredientId must be provided.";
+		}
+		ChildWrapper childWrapper = meal.getChildMap().get(change.ingredientId);
+		if (childWrapper == null || !(childWrapper.getChild() instanceof Ingredient)) {
+			return "Ingredient " + change.ingredientId + " does not belong to the specified meal.";
+		}
+		if (change.weight != null && change.weight <= 0) {
+			return "Weight must be greater than 0.";
+		}
+		if (change.measurementUnit != null) {
+			try {
+				MeasurementUnit.valueOf(change.measurementUnit.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				return "Invalid measurementUnit value: " + change.measurementUnit;
+			}
+		}
+		if (change.pcsWeight != null && change.pcsWeight <= 0) {
+			return "pcsWeight must be greater than 0.";
+		}
+		if (change.density != null && change.density <= 0) {
+			return "Density must be greater than 0.";
+		}
+		if (change.nutrients != null && !change.nutrients.isEmpty()) {
+			NutrientsMap preview = nutrientPreviews.computeIfAbsent(change.ingredientId, id -> {
+				NutrientsMap copy = new NutrientsMap();
+				copy.setAll(childWrapper.getChild().getNutrientsMap().snapshot());
+				return copy;
+			});
+			try {
+				Ingredient.validateNutrientRatios(preview, change.nutrients);
+			} catch (IllegalArgumentException e) {
+				return e.getMessage();
+			}
+			// Mirrors applyIngredientChange: only the core nutrients count towards the sum.
+			for (Map.Entry<String, Double> entry : change.nutrients.entrySet()) {
+				Nutrient nutrient = Nutrient.fromKey(entry.getKey());
+				if (nutrient != null) {
+					preview.set(nutrient, entry.getValue());
+				}
+			}
+			preview.normalizeRatios();
+		}
+		return null;
+	}
+
+	/**
+	 * Applies one validated change. Must run inside an edit scope, which defers the propagation calls below.
+	 */
+	private void applyIngredientChange(Meal meal, IngredientChangeDTO change) {
+		Ingredient ingredient = (Ingredient) meal.getChildMap().get(change.ingredientId).getChild();
+		if (change.measurementUnit != null) {
+			ingredient.setMeasurementUnit(MeasurementUnit.valueOf(change.measurementUnit.toUpperCase()));
+		}
+		if (change.pcsWeight != null) {
+			ingredient.setPcsWeight(change.pcsWeight);
+		}
+		if (change.density != null) {
+			ingredient.setDensity(change.density);
+		}
+		if (change.nutrients != null && !change.nutrients.isEmpty()) {
+			ingredient.setNutrientRatios(change.nutrients);
+			ingredient.normalizeNutrientRatiosAndPropagate();
+		}
+		if (change.weight != null) {
+			meal.modifyWeightOfIngredient(change.ingredientId, change.weight);
+			meal.updateAndPropagate();
+		}
+		ingredient.updateAndPropagate();
+	}
+
 	@GET
 	@Path("/{id}/info")
 	public Response getMealInfo(@PathParam("id") UUID id) {
@@ -0,0 +1,146 @@
+package io.hulsbo.resource;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.hulsbo.model.BaseClass;
+import io.hulsbo.model.ModelLocks;
+import io.hulsbo.model.Propagation;
+import io.hulsbo.model.PropagationListener;
+import io.hulsbo.util.jackson.CustomJacksonProvider;
+import io.hulsbo.util.model.baseclass.ChildWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable JSON snapshots of the model, served by the GET endpoints.
+ * <p>After every propagation run, while the writer still holds its locks, a snapshot of each recomputed
+ * object is built and published atomically. A snapshot embeds the snapshots of its children, and a child
+ * that has not changed since its last snapshot is shared instead of serialized again, so a commit only
+ * rebuilds the path from the changed objects up to their adventures.</p>
+ * <p>A snapshot is served as long as its version equals the version of the object. Edits bump versions
+ * only when they are committed, so a reader never waits on a writer and always sees the last committed
+ * state. Without a current snapshot (e.g. in lazy mode, or for an object that was touched), one is built
+ * under {@link ModelLocks#read} and published.</p>
+ * <p>Published nodes are shared between snapshots and must never be modified.</p>
+ */
+@ApplicationScoped
+public class ModelSnapshots implements PropagationListener {
+
+	private final ObjectMapper mapper = new CustomJacksonProvider().getContext(ObjectMapper.class).copy()
+			.addMixIn(BaseClass.class, WithoutChildMap.class)
+			.addMixIn(ChildWrapper.class, WithoutChild.class);
+
+	private final Map<UUID, Snapshot> published = new ConcurrentHashMap<>();
+
+	@JsonIgnoreProperties(value = "childMap", ignoreUnknown = true)
+	private abstract static class WithoutChildMap {
+	}
+
+	@JsonIgnoreProperties("child")
+	private abstract static class WithoutChild {
+	}
+
+	/**
+	 * The JSON of an object at one version.
+	 */
+	private static final class Snapshot {
+		private final long version;
+		private final JsonNode json;
+
+		private Snapshot(long version, JsonNode json) {
+			this.version = version;
+			this.json = json;
+		}
+	}
+
+	@PostConstruct
+	void init() {
+		Propagation.addListener(this);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		Propagation.removeListener(this);
+		published.clear();
+	}
+
+	/**
+	 * @return The JSON of the object as of its last committed change.
+	 */
+	JsonNode read(BaseClass baseClass) {
+		Snapshot snapshot = published.get(baseClass.getId());
+		if (snapshot != null && snapshot.version == baseClass.getVersion()) {
+			return snapshot.json;
+		}
+		Map<UUID, Snapshot> built = ModelLocks.read(baseClass, () -> {
+			Map<UUID, Snapshot> snapshots = new HashMap<>();
+			build(baseClass, snapshots);
+			return snapshots;
+		});
+		// Only published once the read was validated, so an interrupted optimistic read never leaks.
+		built.forEach(this::publish);
+		return built.get(baseClass.getId()).json;
+	}
+
+	/**
+	 * @return A JSON array of the objects, each as of its own last committed change.
+	 */
+	JsonNode read(List<? extends BaseClass> baseClasses) {
+		ArrayNode array = mapper.createArrayNode();
+		for (BaseClass baseClass : baseClasses) {
+			array.add(read(baseClass));
+		}
+		return array;
+	}
+
+	@Override
+	public void propagated(Set<BaseClass> recomputed) {
+		// Called by the writer while it still holds the locks of everything it recomputed.
+		Map<UUID, Snapshot> built = new HashMap<>();
+		for (BaseClass baseClass : recomputed) {
+			build(baseClass, built);
+		}
+		built.forEach(this::publish);
+	}
+
+	@Override
+	public void removed(BaseClass removed) {
+		published.remove(removed.getId());
+	}
+
+	/**
+	 * Builds the snapshot of an object, reusing current snapshots of its children.
+	 */
+	private JsonNode build(BaseClass baseClass, Map<UUID, Snapshot> built) {
+		UUID id = baseClass.getId();
+		long version = baseClass.getVersion();
+		Snapshot existing = built.get(id);
+		if (existing == null) {
+			existing = published.get(id);
+		}
+		if (existing != null && existing.version == version) {
+			return existing.json;
+		}
+
+		ObjectNode json = mapper.valueToTree(baseClass);
+		ObjectNode childMap = json.putObject("childMap");
+		for (Map.Entry<UUID, ChildWrapper> entry : baseClass.getChildMap().entrySet()) {
+			ObjectNode wrapper = mapper.valueToTree(entry.getValue());
+			wrapper.set("child", build(entry.getValue().getChild(), built));
+			childMap.set(entry.getKey().toString(), wrapper);
+		}
+		built.put(id, new Snapshot(version, json));
+		return json;
+	}
+
+	private void publish(UUID id, Snapshot snapshot) {
+		published.merge(id, snapshot, (current, candidate) -> candidate.version >= current.version ? candidate : current);
+	}
+}
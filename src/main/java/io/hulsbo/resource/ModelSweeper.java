@@ -0,0 +1,125 @@
+package io.hulsbo.resource;
+
+import io.hulsbo.model.BaseClass;
+import io.hulsbo.model.Manager;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reclaims model objects that nothing reaches anymore, e.g. a Meal removed from its Adventure together
+ * with its Ingredients.
+ * <p>Every {@code provisioner.sweeper.interval-ms} the sweeper looks for orphans (objects without parents
+ * that are not roots, see {@link Manager#pin(BaseClass)}). An object is only reclaimed if it was already
+ * an orphan at the previous sweep, so one that is created and then added to a parent is never caught in
+ * between. Reclamation cascades to the objects below an orphan that are left without parents.</p>
+ */
+@Startup
+@ApplicationScoped
+public class ModelSweeper {
+
+	@ConfigProperty(name = "provisioner.sweeper.interval-ms", defaultValue = "60000")
+	long intervalMs;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "model-sweeper");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicLong sweeps = new AtomicLong();
+	private final Map<String, Long> reclaimed = new ConcurrentHashMap<>();
+	private volatile Set<UUID> suspects = new HashSet<>(); // replaced, never modified, by sweep()
+
+	/**
+	 * The counters of the sweeper.
+	 */
+	public static final class Stats {
+		private final long sweeps;
+		private final Map<String, Long> reclaimed;
+		private final int pendingOrphans;
+
+		private Stats(ModelSweeper sweeper) {
+			this.sweeps = sweeper.sweeps.get();
+			this.reclaimed = new TreeMap<>(sweeper.reclaimed);
+			this.pendingOrphans = sweeper.suspects.size();
+		}
+
+		public long getSweeps() {
+			return sweeps;
+		}
+
+		/**
+		 * @return How many objects have been reclaimed, by type.
+		 */
+		public Map<String, Long> getReclaimed() {
+			return reclaimed;
+		}
+
+		/**
+		 * @return How many orphans were found by the last sweep and will be reclaimed by the next one.
+		 */
+		public int getPendingOrphans() {
+			return pendingOrphans;
+		}
+	}
+
+	@PostConstruct
+	void init() {
+		if (intervalMs > 0) {
+			scheduler.scheduleWithFixedDelay(this::sweepLogged, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Reclaims the objects that were orphans at the previous sweep and still are.
+	 *
+	 * @return How many objects were reclaimed, by type.
+	 */
+	synchronized Map<String, Integer> sweep() {
+		Map<String, Integer> freed = new TreeMap<>();
+		Set<UUID> orphans = new HashSet<>();
+		for (UUID id : Manager.findOrphans()) {
+			if (!suspects.contains(id)) {
+				orphans.add(id);
+				continue;
+			}
+			for (BaseClass removed : Manager.reclaimOrphan(id)) {
+				freed.merge(removed.getClass().getSimpleName(), 1, Integer::sum);
+			}
+		}
+		suspects = orphans;
+		sweeps.incrementAndGet();
+		freed.forEach((type, count) -> reclaimed.merge(type, (long) count, Long::sum));
+		return freed;
+	}
+
+	Stats getStats() {
+		return new Stats(this);
+	}
+
+	private void sweepLogged() {
+		try {
+			Map<String, Integer> freed = sweep();
+			if (!freed.isEmpty()) {
+				Log.infof("Model sweeper reclaimed %s; %d orphan(s) pending.", freed, suspects.size());
+			}
+		} catch (RuntimeException e) {
+			Log.errorf(e, "Model sweep failed: %s", e.getMessage());
+		}
+	}
+}
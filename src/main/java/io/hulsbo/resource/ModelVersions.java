@@ -0,0 +1,79 @@
+package io.hulsbo.resource;
+
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import io.hulsbo.model.BaseClass;
+import io.hulsbo.model.Manager;
+import io.hulsbo.model.Propagation;
+import io.hulsbo.model.RecomputeExecutor;
+import io.quarkus.logging.Log;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for model versions in responses.
+ * <p>Reads are tagged with a strong ETag built from the version of the object (or of the adventure list),
+ * so polling clients get a 304 without the graph being serialized again. In async propagation mode,
+ * mutation responses also carry the version their changes were queued under, and reads can wait for a
+ * version to be recomputed before answering.</p>
+ */
+final class ModelVersions {
+	static final String VERSION_HEADER = "X-Model-Version";
+	// Versions restart on every boot, so tags carry the start time to never match a tag from a previous run.
+	private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+	static final String AWAIT_TIMEOUT_PROPERTY = "provisioner.propagation.await-timeout-ms";
+
+	private static final long AWAIT_TIMEOUT_MS = ConfigProvider.getConfig()
+			.getOptionalValue(AWAIT_TIMEOUT_PROPERTY, Long.class)
+			.orElse(5000L);
+
+	private ModelVersions() {
+	}
+
+	static EntityTag entityTag(BaseClass baseClass) {
+		return new EntityTag(EPOCH + "-" + baseClass.getVersion());
+	}
+
+	static EntityTag adventuresTag() {
+		return new EntityTag(EPOCH + "-" + Manager.getAdventuresVersion());
+	}
+
+	/**
+	 * Answers a read with 304 Not Modified if the client's If-None-Match matches the tag, or with the
+	 * entity and its tag otherwise. The tag is taken before serialization, so a concurrent change can at
+	 * worst make the next poll fetch the same content again.
+	 */
+	static Response conditionalOk(Request request, EntityTag tag, Supplier<Object> entity) {
+		Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+		if (notModified != null) {
+			return notModified.tag(tag).build();
+		}
+		return Response.ok(entity.get()).tag(tag).build();
+	}
+
+	/**
+	 * Adds the latest queued version of the object to a mutation response when propagation is async.
+	 */
+	static Response.ResponseBuilder withVersion(Response.ResponseBuilder builder, UUID id) {
+		if (Propagation.isAsync()) {
+			builder.header(VERSION_HEADER, RecomputeExecutor.requestedVersion(id));
+		}
+		return builder;
+	}
+
+	/**
+	 * Waits until the given version has been recomputed for the object, if a version was requested.
+	 * On timeout the current state is served anyway.
+	 */
+	static void await(UUID id, Long version) {
+		if (version == null || !Propagation.isAsync()) {
+			return;
+		}
+		if (!RecomputeExecutor.awaitVersion(id, version, AWAIT_TIMEOUT_MS)) {
+			Log.warnf("Timed out after %d ms waiting for version %d of %s.", AWAIT_TIMEOUT_MS, version, id);
+		}
+	}
+}
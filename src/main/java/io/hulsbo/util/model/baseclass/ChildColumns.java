@@ -0,0 +1,175 @@
+package io.hulsbo.util.model.baseclass;
+
+import io.hulsbo.model.BaseClass;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A columnar copy of the numbers a parent aggregates from its children, in parallel arrays: the handle and
+ * weight of each child, and a row-major {@code children x nutrients} matrix of the child nutrient values as
+ * they were last aggregated.
+ * <p>Rows are assigned by {@link #rebuild(Collection)} after every structural change of the child map, and
+ * refreshed one by one with {@link #update(int)} when a child changes. A changed child is found by its
+ * {@link BaseClass#handle() handle} through a small open-addressing table of {@code int}s
+ * ({@link #rowOf(BaseClass)}), not by id through the child map. The parent nutrient vector is then a dense
+ * matrix-vector product over contiguous arrays ({@link #weightedSum(NutrientsMap)}), instead of a walk
+ * through wrapper, child and map for every nutrient of every child.</p>
+ * <p>Weights are unnormalized, so the columns also keep the weighted sums and the total weight they were
+ * computed from. A child whose weight or nutrients changed is folded in with {@link #apply(int)} in
+ * O(nutrients), even though the ratios of all its siblings change with the total.</p>
+ */
+public final class ChildColumns {
+    private static final int NUTRIENTS = Nutrient.COUNT;
+    private static final int NO_ROW = -1;
+
+    private int size;
+    private ChildWrapper[] wrappers = new ChildWrapper[0];
+    private int[] handles = new int[0];
+    private double[] weights = new double[0];
+    private double[] nutrients = new double[0];
+    // Open addressing with linear probing from child handle to row; a slot holds NO_ROW or a row.
+    private int[] rowSlots = new int[0];
+    // Sum of weight times nutrient value over all rows, and of all weights, as of the last aggregation.
+    private final double[] sums = new double[NUTRIENTS];
+    private double totalWeight;
+    private final double[] average = new double[NUTRIENTS];
+
+    /**
+     * Assigns a row to every child, in iteration order, and copies its current values.
+     */
+    public void rebuild(Collection<ChildWrapper> children) {
+        size = children.size();
+        if (weights.length < size) {
+            int capacity = Math.max(size, weights.length * 2);
+            wrappers = new ChildWrapper[capacity];
+            handles = new int[capacity];
+            weights = new double[capacity];
+            nutrients = new double[capacity * NUTRIENTS];
+        }
+        int slots = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        if (rowSlots.length != slots) {
+            rowSlots = new int[slots];
+        }
+        Arrays.fill(rowSlots, NO_ROW);
+        int row = 0;
+        for (ChildWrapper child : children) {
+            wrappers[row] = child;
+            handles[row] = child.getChild().handle();
+            if (handles[row] >= 0) {
+                int mask = rowSlots.length - 1;
+                int slot = slotFor(handles[row], mask);
+                while (rowSlots[slot] != NO_ROW) {
+                    slot = (slot + 1) & mask;
+                }
+                rowSlots[slot] = row;
+            }
+            update(row++);
+        }
+        // Rows past the end no longer hold children and must not keep them reachable.
+        Arrays.fill(wrappers, size, wrappers.length, null);
+    }
+
+    /**
+     * @return The row of the given child, or -1 if it was not a child at the last {@link #rebuild(Collection)}
+     * or has no handle (an object no longer registered in the Manager).
+     */
+    public int rowOf(BaseClass child) {
+        int handle = child.handle();
+        if (handle < 0 || rowSlots.length == 0) {
+            return NO_ROW;
+        }
+        int mask = rowSlots.length - 1;
+        for (int slot = slotFor(handle, mask); rowSlots[slot] != NO_ROW; slot = (slot + 1) & mask) {
+            int row = rowSlots[slot];
+            if (handles[row] == handle) {
+                // A handle freed and reused since the rebuild belongs to another object.
+                return wrappers[row].getChild() == child ? row : NO_ROW;
+            }
+        }
+        return NO_ROW;
+    }
+
+    /**
+     * @return The child in the given row.
+     */
+    public BaseClass childAt(int row) {
+        return wrappers[row].getChild();
+    }
+
+    /**
+     * Copies the current weight and child nutrients of a row's wrapper into the row. The sums are left
+     * alone until the next {@link #weightedSum(NutrientsMap)}.
+     */
+    public void update(int row) {
+        ChildWrapper child = wrappers[row];
+        weights[row] = child.weightUnits();
+        child.getChild().getNutrientsMap().copyTo(nutrients, row * NUTRIENTS);
+    }
+
+    /**
+     * Replaces the contribution of a row to the sums with the current values of its wrapper, and refreshes
+     * the row.
+     */
+    public void apply(int row) {
+        int offset = row * NUTRIENTS;
+        double oldWeight = weights[row];
+        double newWeight = wrappers[row].weightUnits();
+        for (int i = 0; i < NUTRIENTS; i++) {
+            sums[i] -= nutrients[offset + i] * oldWeight;
+        }
+        totalWeight += newWeight - oldWeight;
+        update(row);
+        for (int i = 0; i < NUTRIENTS; i++) {
+            sums[i] += nutrients[offset + i] * newWeight;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Re-sums all rows and sets {@code target} to their weighted average.
+     * <p>The inner loop runs over one contiguous row with a constant trip count, which the JIT unrolls
+     * and can vectorize.</p>
+     */
+    public void weightedSum(NutrientsMap target) {
+        Arrays.fill(sums, 0.0);
+        totalWeight = 0.0;
+        for (int row = 0, offset = 0; row < size; row++, offset += NUTRIENTS) {
+            double weight = weights[row];
+            totalWeight += weight;
+            for (int i = 0; i < NUTRIENTS; i++) {
+                sums[i] += nutrients[offset + i] * weight;
+            }
+        }
+        writeAverage(target);
+    }
+
+    /**
+     * Sets {@code target} to the weighted average kept by {@link #apply(int)}, without re-summing.
+     */
+    public void writeAverage(NutrientsMap target) {
+        for (int i = 0; i < NUTRIENTS; i++) {
+            average[i] = totalWeight > 0 ? sums[i] / totalWeight : 0.0;
+        }
+        target.setAll(average);
+    }
+
+    /**
+     * Adds the sparse micronutrients of every row's child to {@code target}, weighted by the row's share of
+     * the total weight as of the last aggregation.
+     */
+    public void addMicronutrients(NutrientsMap target) {
+        for (int row = 0; row < size; row++) {
+            double ratio = totalWeight > 0 ? weights[row] / totalWeight : 0.0;
+            target.addMicronutrientsWeighted(wrappers[row].getChild().getNutrientsMap(), ratio);
+        }
+    }
+
+    private static int slotFor(int handle, int mask) {
+        int mixed = handle * 0x9E3779B9;
+        return (mixed ^ (mixed >>> 16)) & mask;
+    }
+}
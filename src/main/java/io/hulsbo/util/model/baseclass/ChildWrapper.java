@@ -4,19 +4,22 @@ import io.hulsbo.model.BaseClass;
 
 public class ChildWrapper {
     private BaseClass child;
-    private double ratio;
+    // Unnormalized weight in FixedPoint units; the ratio is this weight over the total of all siblings.
+    private long weight;
+    // Total of this child and its siblings, shared with the parent; null while not attached to one.
+    private WeightTotal total;
     private double recipeWeight;
 
-    public ChildWrapper(BaseClass childObject, double ratio, double recipeWeight) {
+    public ChildWrapper(BaseClass childObject, double weight, double recipeWeight) {
         this.child = childObject;
-        this.ratio = ratio;
+        this.weight = FixedPoint.toUnits(weight);
         this.recipeWeight = recipeWeight;
     }
 
     // Constructor without absWeight (optional parameter)
-    public ChildWrapper(BaseClass childObject, double ratio) {
+    public ChildWrapper(BaseClass childObject, double weight) {
         this.child = childObject;
-        this.ratio = ratio;
+        this.weight = FixedPoint.toUnits(weight);
         // Default value for absWeight
         this.recipeWeight = 0.0; // Or any other default value you want
     }
@@ -25,8 +28,20 @@ public class ChildWrapper {
         return child;
     }
 
+    /**
+     * @return The share of this child among its siblings, derived from the weights when read. Without a
+     * parent the weight itself, read as a ratio.
+     */
     public double getRatio() {
-        return ratio;
+        long sum = total == null ? FixedPoint.ONE : total.get();
+        return sum == 0 ? 0.0 : weight / (double) sum;
+    }
+
+    /**
+     * @return The unnormalized weight, in {@link FixedPoint} units.
+     */
+    public long weightUnits() {
+        return weight;
     }
 
     public double getRecipeWeight() {
@@ -37,8 +52,33 @@ public class ChildWrapper {
         this.child = baseclass;
     }
 
-    public void setRatio(double ratio) {
-        this.ratio = ratio;
+    /**
+     * Sets the unnormalized weight and keeps the total of the siblings current.
+     */
+    public void setWeightUnits(long weight) {
+        if (total != null) {
+            total.add(weight - this.weight);
+        }
+        this.weight = weight;
+    }
+
+    /**
+     * Adds the weight of this child to the total of its new siblings.
+     */
+    public void attach(WeightTotal total) {
+        detach();
+        this.total = total;
+        total.add(weight);
+    }
+
+    /**
+     * Takes the weight of this child out of the total of its siblings.
+     */
+    public void detach() {
+        if (total != null) {
+            total.add(-weight);
+            total = null;
+        }
     }
 
     public void setRecipeWeight(double recipeWeight) {
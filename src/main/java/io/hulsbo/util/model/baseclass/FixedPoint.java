@@ -0,0 +1,56 @@
+package io.hulsbo.util.model.baseclass;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point helpers for ratios and weights.
+ * <p>A ratio is held as a long number of {@link #ONE} units (parts per billion). Children store raw
+ * weights in these longs and their ratios are derived on read, as the weight over the total weight of all
+ * children: the children of a meal are weighed in whole milligrams, the children of an adventure
+ * in ratio units. Nutrient ratios from the database are converted to units without going through a double.</p>
+ */
+public final class FixedPoint {
+    /**
+     * The ratio 1.0, in units.
+     */
+    public static final long ONE = 1_000_000_000L;
+    private static final int SCALE = 9;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L,
+            10_000_000L, 100_000_000L, 1_000_000_000L};
+
+    private FixedPoint() {
+    }
+
+    public static long toUnits(double ratio) {
+        return Math.round(ratio * ONE);
+    }
+
+    public static double toRatio(long units) {
+        return units / (double) ONE;
+    }
+
+    public static long toMilligrams(double grams) {
+        return Math.round(grams * 1000.0);
+    }
+
+    /**
+     * Converts a decimal ratio (e.g. a {@code NUMERIC(5,4)} column) to units from its unscaled value, without
+     * going through a double.
+     */
+    public static long toUnits(BigDecimal ratio) {
+        int scale = ratio.scale();
+        if (scale >= 0 && scale <= SCALE && ratio.precision() <= 18) {
+            return ratio.unscaledValue().longValue() * POWERS_OF_TEN[SCALE - scale];
+        }
+        return ratio.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @return The units as a decimal with the given number of decimals (at most 9), rounded half up.
+     */
+    public static BigDecimal toDecimal(long units, int decimals) {
+        long divisor = POWERS_OF_TEN[SCALE - decimals];
+        return BigDecimal.valueOf(Math.floorDiv(units + divisor / 2, divisor), decimals);
+    }
+}
@@ -0,0 +1,54 @@
+package io.hulsbo.util.model.baseclass;
+
+/**
+ * The nutrients tracked by a {@link NutrientsMap}. The ordinal is the index of the nutrient in the map's
+ * backing array, and the key is the name used in JSON and by the string-keyed map view.
+ */
+public enum Nutrient {
+    PROTEIN("protein"),
+    FAT("fat"),
+    CARBS("carbs"),
+    WATER("water"),
+    FIBER("fiber"),
+    SALT("salt");
+
+    public static final int COUNT = values().length;
+    // values() returns a new array on every call, so hot loops use this shared copy instead.
+    private static final Nutrient[] VALUES = values();
+
+    private final String key;
+
+    Nutrient(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The nutrient at the given index, see {@link #ordinal()}.
+     */
+    public static Nutrient ofIndex(int index) {
+        return VALUES[index];
+    }
+
+    /**
+     * @return The energy density (kcal/kg) of food with the given nutrient ratios.
+     */
+    public static double energyDensity(double protein, double fat, double carbs) {
+        return (carbs + protein) * 4000 + fat * 9000;
+    }
+
+    /**
+     * @return The nutrient with the given key, or null if there is none.
+     */
+    public static Nutrient fromKey(Object key) {
+        for (Nutrient nutrient : VALUES) {
+            if (nutrient.key.equals(key)) {
+                return nutrient;
+            }
+        }
+        return null;
+    }
+}
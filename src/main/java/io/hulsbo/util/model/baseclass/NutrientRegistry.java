@@ -0,0 +1,94 @@
+package io.hulsbo.util.model.baseclass;
+
+import io.quarkus.logging.Log;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every known nutrient a dense index. The core {@link Nutrient}s take indexes 0 to
+ * {@link Nutrient#COUNT} - 1; micronutrients (sodium, vitamins, minerals, ...) follow in registration order.
+ * <p>Micronutrients are registered from {@value #MICRONUTRIENTS_PROPERTY} at startup, and from catalog
+ * ingredients that carry a nutrient not seen before. Indexes are never reused, so they can be kept in
+ * arrays for the lifetime of the application.</p>
+ */
+public final class NutrientRegistry {
+    static final String MICRONUTRIENTS_PROPERTY = "provisioner.nutrients.micronutrients";
+
+    private static final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private static volatile String[] keys = new String[0];
+
+    static {
+        for (Nutrient nutrient : Nutrient.values()) {
+            register(nutrient.getKey());
+        }
+        for (String key : readMicronutrients()) {
+            register(key);
+        }
+    }
+
+    private NutrientRegistry() {
+    }
+
+    /**
+     * Registers a nutrient, if it is not registered yet.
+     *
+     * @return The index of the nutrient.
+     * @throws IllegalArgumentException if the key is blank.
+     */
+    public static synchronized int register(String key) {
+        if (key == null || key.isBlank()) {
+            throw new IllegalArgumentException("Nutrient key cannot be blank.");
+        }
+        key = key.trim();
+        Integer existing = indexes.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        String[] registered = Arrays.copyOf(keys, keys.length + 1);
+        registered[keys.length] = key;
+        keys = registered;
+        indexes.put(key, keys.length - 1);
+        return keys.length - 1;
+    }
+
+    /**
+     * @return The index of the nutrient, or -1 if it is not registered.
+     */
+    public static int indexOf(Object key) {
+        Integer index = indexes.get(key);
+        return index == null ? -1 : index;
+    }
+
+    public static String keyOf(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @return The number of registered nutrients, core nutrients included.
+     */
+    public static int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return Whether the index belongs to a micronutrient rather than a core {@link Nutrient}.
+     */
+    public static boolean isMicronutrient(int index) {
+        return index >= Nutrient.COUNT;
+    }
+
+    private static List<String> readMicronutrients() {
+        try {
+            return ConfigProvider.getConfig()
+                    .getOptionalValues(MICRONUTRIENTS_PROPERTY, String.class)
+                    .orElse(List.of());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.warnf("Could not read %s (%s), starting without micronutrients.", MICRONUTRIENTS_PROPERTY, e.getMessage());
+            return List.of();
+        }
+    }
+}
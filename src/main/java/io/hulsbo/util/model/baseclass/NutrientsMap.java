@@ -3,47 +3,84 @@ package io.hulsbo.util.model.baseclass;
 import io.quarkus.logging.Log;
 
 import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Locale;
 
+/**
+ * The ratio of each {@link Nutrient}, stored in a primitive array indexed by {@link Nutrient#ordinal()}.
+ * <p>The {@code Map<String, Double>} view is kept for Jackson and string-keyed callers; the aggregation
+ * hot path uses the {@link Nutrient}-indexed accessors, which neither box nor hash.</p>
+ * <p>Micronutrients registered in the {@link NutrientRegistry} are stored sparsely: a dense array indexed
+ * by registry index, allocated on the first non-zero micronutrient, plus a bit set of the non-zero ones.
+ * Aggregation and serialization only visit those bits. Micronutrients are not part of the 100% cap of
+ * the core nutrients, and are set with {@link #setMicronutrient(int, double)} rather than {@link #put}.</p>
+ */
 public class NutrientsMap extends AbstractMap<String, Double> {
-    private final Map<String, Double> nutrientsMap = new LinkedHashMap<>();
+    private final double[] values = new double[Nutrient.COUNT];
+    // Running sum of values, kept with Kahan compensation so incremental updates don't drift.
+    private double sum;
+    private double sumCompensation;
+    // Micronutrient ratios by registry index minus Nutrient.COUNT; both null until one is non-zero.
+    private double[] micronutrients;
+    private BitSet presentMicronutrients;
+    private final Set<Entry<String, Double>> entrySet = new EntrySet();
     private static final double TOLERANCE = 1e-9;
+    /**
+     * The nutrient keys, in {@link Nutrient} order.
+     */
+    public static final String[] NUTRIENTS = Arrays.stream(Nutrient.values()).map(Nutrient::getKey).toArray(String[]::new);
 
     public NutrientsMap() {
-        nutrientsMap.put("protein", 0.0);
-        nutrientsMap.put("fat", 0.0);
-        nutrientsMap.put("carbs", 0.0);
-        nutrientsMap.put("water", 0.0);
-        nutrientsMap.put("fiber", 0.0);
-        nutrientsMap.put("salt", 0.0);
     }
 
     @Override
     public Set<Entry<String, Double>> entrySet() {
-        return nutrientsMap.entrySet();
+        return entrySet;
     }
 
     @Override
-    public Double put(String key, Double value) {
-        if (!nutrientsMap.containsKey(key)) {
-            throw new IllegalArgumentException("Invalid nutrient key: " + key);
+    public Double get(Object key) {
+        Nutrient nutrient = Nutrient.fromKey(key);
+        if (nutrient != null) {
+            return values[nutrient.ordinal()];
         }
+        int index = NutrientRegistry.indexOf(key);
+        return index >= 0 && getMicronutrient(index) != 0.0 ? getMicronutrient(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return Nutrient.COUNT + micronutrientCount();
+    }
+
+    @Override
+    public Double put(String key, Double value) {
+        Nutrient nutrient = nutrientOf(key);
         if (value < 0.0) {
              throw new IllegalArgumentException("Nutrient value cannot be negative: " + value);
         }
         // Clamp value at 1.0 maximum
         value = Math.min(value, 1.0);
 
-        double oldValue = nutrientsMap.get(key);
+        double oldValue = values[nutrient.ordinal()];
         // If the value isn't changing significantly, just return
         if (Math.abs(value - oldValue) < TOLERANCE) {
              return oldValue;
         }
 
-        double currentSum = sumRatios();
+        double currentSum = sum();
         double potentialSum = currentSum - oldValue + value;
 
         if (potentialSum > 1.0 + TOLERANCE) {
@@ -52,7 +89,7 @@ public class NutrientsMap extends AbstractMap<String, Double> {
                 key, value * 100, (potentialSum-1) * 100));
         } else {
             // Normal case: just update the value
-            nutrientsMap.put(key, value);
+            write(nutrient.ordinal(), value);
             // Normalization, if needed (when sum < 1.0), is handled externally.
         }
 
@@ -65,29 +102,25 @@ public class NutrientsMap extends AbstractMap<String, Double> {
      * Still performs basic key and negative value checks.
      */
     public Double internalPut(String key, Double value) {
-        if (!nutrientsMap.containsKey(key)) {
-            throw new IllegalArgumentException("Invalid nutrient key: " + key);
-        }
-        if (value < 0.0) {
-             throw new IllegalArgumentException("Nutrient value cannot be negative: " + value);
-        }
-        // Clamp value at 1.0 maximum
-        value = Math.min(value, 1.0);
-
-        // Direct put without sum validation
-        return nutrientsMap.put(key, value);
+        Nutrient nutrient = nutrientOf(key);
+        double oldValue = values[nutrient.ordinal()];
+        set(nutrient, value);
+        return oldValue;
     }
-    
+
     public Double updateNutrient(String key, Double value) {
         return this.put(key, value);
     }
     
-    private double sumRatios() {
-        return nutrientsMap.values().stream().mapToDouble(Double::doubleValue).sum();
+    /**
+     * @return The sum of the core nutrient ratios, maintained on every write.
+     */
+    public double sum() {
+        return sum;
     }
     
     public void normalizeRatios() {
-        double currentSum = sumRatios();
+        double currentSum = sum();
 
         if (Math.abs(currentSum - 1.0) < TOLERANCE || currentSum > 1.0 + TOLERANCE) {
             return;
@@ -100,11 +133,174 @@ public class NutrientsMap extends AbstractMap<String, Double> {
         double scaleFactor = 1.0 / currentSum;
         Log.infof("Normalizing NutrientsMap. Current sum: %.4f, Scale factor: %.4f", currentSum, scaleFactor);
 
-        for (Map.Entry<String, Double> entry : nutrientsMap.entrySet()) {
-            double oldValue = entry.getValue();
-            double newValue = oldValue * scaleFactor;
-            // Use internalPut to bypass intermediate sum checks during normalization
-            this.internalPut(entry.getKey(), newValue);
+        for (int i = 0; i < values.length; i++) {
+            // Bypasses intermediate sum checks during normalization
+            values[i] = Math.min(values[i] * scaleFactor, 1.0);
+        }
+        resum();
+    }
+
+    /**
+     * @return The ratio of the nutrient.
+     */
+    public double get(Nutrient nutrient) {
+        return values[nutrient.ordinal()];
+    }
+
+    /**
+     * Sets the ratio of a nutrient without sum validation, like {@link #internalPut(String, Double)}.
+     * Values above 1.0 are clamped.
+     */
+    public void set(Nutrient nutrient, double value) {
+        if (value < 0.0) {
+             throw new IllegalArgumentException("Nutrient value cannot be negative: " + value);
+        }
+        write(nutrient.ordinal(), Math.min(value, 1.0));
+    }
+
+    /**
+     * Sets every nutrient ratio to zero.
+     */
+    public void reset() {
+        Arrays.fill(values, 0.0);
+        sum = 0.0;
+        sumCompensation = 0.0;
+    }
+
+    /**
+     * Sets every nutrient from an array ordered as {@link Nutrient}, without sum validation.
+     * Values are clamped to [0, 1].
+     */
+    public void setAll(double[] source) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.min(Math.max(0.0, source[i]), 1.0);
+        }
+        resum();
+    }
+
+    /**
+     * Copies the nutrient values into {@code target} from {@code offset} on, ordered as {@link Nutrient}.
+     */
+    public void copyTo(double[] target, int offset) {
+        System.arraycopy(values, 0, target, offset, values.length);
+    }
+
+    /**
+     * @return A copy of every value, ordered as {@link Nutrient} and followed by the micronutrients, to
+     * compare with {@link #differsFrom(double[], double)} later.
+     */
+    public double[] snapshot() {
+        int micronutrientSlots = micronutrients == null ? 0 : micronutrients.length;
+        double[] snapshot = Arrays.copyOf(values, values.length + micronutrientSlots);
+        if (micronutrientSlots > 0) {
+            System.arraycopy(micronutrients, 0, snapshot, values.length, micronutrientSlots);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return Whether any value, micronutrients included, differs from a {@link #snapshot()} by more than
+     * the tolerance.
+     */
+    public boolean differsFrom(double[] snapshot, double tolerance) {
+        int length = Math.max(snapshot.length, values.length + (micronutrients == null ? 0 : micronutrients.length));
+        for (int i = 0; i < length; i++) {
+            double current = i < values.length ? values[i] : getMicronutrient(i);
+            double previous = i < snapshot.length ? snapshot[i] : 0.0;
+            if (Math.abs(current - previous) > tolerance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The ratio of a micronutrient, by its {@link NutrientRegistry} index.
+     */
+    public double getMicronutrient(int index) {
+        int slot = index - Nutrient.COUNT;
+        return micronutrients == null || slot >= micronutrients.length ? 0.0 : micronutrients[slot];
+    }
+
+    /**
+     * Sets the ratio of a micronutrient, by its {@link NutrientRegistry} index.
+     *
+     * @throws IllegalArgumentException if the index is not a micronutrient, or the value is not within [0, 1].
+     */
+    public void setMicronutrient(int index, double value) {
+        if (!NutrientRegistry.isMicronutrient(index)) {
+            throw new IllegalArgumentException("Not a micronutrient: " + NutrientRegistry.keyOf(index));
+        }
+        if (value < 0.0 || value > 1.0) {
+            throw new IllegalArgumentException("Micronutrient value must be between 0.0 and 1.0: " + value);
+        }
+        int slot = index - Nutrient.COUNT;
+        if (value == 0.0) {
+            if (micronutrients != null && slot < micronutrients.length) {
+                micronutrients[slot] = 0.0;
+                presentMicronutrients.clear(slot);
+            }
+            return;
+        }
+        ensureMicronutrientCapacity(slot);
+        micronutrients[slot] = value;
+        presentMicronutrients.set(slot);
+    }
+
+    public boolean hasMicronutrients() {
+        return presentMicronutrients != null && !presentMicronutrients.isEmpty();
+    }
+
+    /**
+     * @return The non-zero micronutrients by key, in registry order.
+     */
+    public Map<String, Double> getMicronutrients() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        if (hasMicronutrients()) {
+            for (int slot = presentMicronutrients.nextSetBit(0); slot >= 0; slot = presentMicronutrients.nextSetBit(slot + 1)) {
+                result.put(NutrientRegistry.keyOf(slot + Nutrient.COUNT), micronutrients[slot]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clears every micronutrient, visiting only the non-zero ones.
+     */
+    public void resetMicronutrients() {
+        if (hasMicronutrients()) {
+            for (int slot = presentMicronutrients.nextSetBit(0); slot >= 0; slot = presentMicronutrients.nextSetBit(slot + 1)) {
+                micronutrients[slot] = 0.0;
+            }
+            presentMicronutrients.clear();
+        }
+    }
+
+    /**
+     * Adds the micronutrients of another map, weighted by {@code ratio}, visiting only its non-zero ones.
+     */
+    public void addMicronutrientsWeighted(NutrientsMap other, double ratio) {
+        if (!other.hasMicronutrients() || ratio == 0.0) {
+            return;
+        }
+        BitSet present = other.presentMicronutrients;
+        ensureMicronutrientCapacity(present.length() - 1);
+        for (int slot = present.nextSetBit(0); slot >= 0; slot = present.nextSetBit(slot + 1)) {
+            micronutrients[slot] = Math.min(micronutrients[slot] + other.micronutrients[slot] * ratio, 1.0);
+            presentMicronutrients.set(slot);
+        }
+    }
+
+    private int micronutrientCount() {
+        return presentMicronutrients == null ? 0 : presentMicronutrients.cardinality();
+    }
+
+    private void ensureMicronutrientCapacity(int slot) {
+        if (micronutrients == null) {
+            micronutrients = new double[Math.max(slot + 1, NutrientRegistry.size() - Nutrient.COUNT)];
+            presentMicronutrients = new BitSet(micronutrients.length);
+        } else if (slot >= micronutrients.length) {
+            micronutrients = Arrays.copyOf(micronutrients, Math.max(slot + 1, NutrientRegistry.size() - Nutrient.COUNT));
         }
     }
 
@@ -118,5 +314,90 @@ public class NutrientsMap extends AbstractMap<String, Double> {
         throw new UnsupportedOperationException("A nutrientsMaps cannot be cleared.");
     }
 
+    /**
+     * Sets one value and applies the difference to the running sum.
+     */
+    private void write(int index, double value) {
+        double difference = value - values[index];
+        values[index] = value;
+        double compensated = difference - sumCompensation;
+        double newSum = sum + compensated;
+        sumCompensation = (newSum - sum) - compensated;
+        sum = newSum;
+    }
+
+    /**
+     * Recomputes the running sum after a bulk write of all values.
+     */
+    private void resum() {
+        sum = 0.0;
+        sumCompensation = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            double compensated = values[i] - sumCompensation;
+            double newSum = sum + compensated;
+            sumCompensation = (newSum - sum) - compensated;
+            sum = newSum;
+        }
+    }
+
+    private static Nutrient nutrientOf(String key) {
+        Nutrient nutrient = Nutrient.fromKey(key);
+        if (nutrient == null) {
+            throw new IllegalArgumentException("Invalid nutrient key: " + key);
+        }
+        return nutrient;
+    }
+
+    /**
+     * Live entries over the backing arrays: the core nutrients in {@link Nutrient} order, then the non-zero
+     * micronutrients in registry order.
+     */
+    private final class EntrySet extends AbstractSet<Entry<String, Double>> {
+        @Override
+        public Iterator<Entry<String, Double>> iterator() {
+            return new Iterator<>() {
+                private int next = 0;
+                private int nextMicronutrient = hasMicronutrients() ? presentMicronutrients.nextSetBit(0) : -1;
+
+                @Override
+                public boolean hasNext() {
+                    return next < values.length || nextMicronutrient >= 0;
+                }
+
+                @Override
+                public Entry<String, Double> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (next < values.length) {
+                        Nutrient nutrient = Nutrient.ofIndex(next++);
+                        return new SimpleEntry<>(nutrient.getKey(), values[nutrient.ordinal()]) {
+                            @Override
+                            public Double setValue(Double value) {
+                                super.setValue(value);
+                                return internalPut(nutrient.getKey(), value);
+                            }
+                        };
+                    }
+                    int index = nextMicronutrient + Nutrient.COUNT;
+                    nextMicronutrient = presentMicronutrients.nextSetBit(nextMicronutrient + 1);
+                    return new SimpleEntry<>(NutrientRegistry.keyOf(index), getMicronutrient(index)) {
+                        @Override
+                        public Double setValue(Double value) {
+                            Double old = super.setValue(value);
+                            setMicronutrient(index, value);
+                            return old;
+                        }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return NutrientsMap.this.size();
+        }
+    }
+
 }
 
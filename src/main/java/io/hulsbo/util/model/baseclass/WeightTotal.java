@@ -0,0 +1,18 @@
+package io.hulsbo.util.model.baseclass;
+
+/**
+ * The sum of the weights of the children of one object, shared by the object and its {@link ChildWrapper}s.
+ * Wrappers keep it current as they are attached, re-weighed and detached, so a ratio is one division away
+ * and no sibling is ever rewritten. Guarded by the model locks of the owning object.
+ */
+public final class WeightTotal {
+    private long sum;
+
+    public long get() {
+        return sum;
+    }
+
+    void add(long delta) {
+        sum += delta;
+    }
+}
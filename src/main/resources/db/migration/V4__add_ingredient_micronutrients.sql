@@ -0,0 +1,3 @@
+-- Micronutrient ratios (sodium, vitamins, minerals, ...) keyed by nutrient name, e.g. {"sodium": 0.004}.
+-- Only non-zero values are stored. They are not part of chk_nutrient_ratios_sum.
+ALTER TABLE ingredients ADD COLUMN IF NOT EXISTS micronutrients JSONB NOT NULL DEFAULT '{}'::jsonb;
@@ -156,4 +156,70 @@ public class AdventureResourceTest {
 		assertTrue(statusCode == 200 || statusCode == 500,
 				"Expected status code 200 or 500, but got " + statusCode);
 	}
-}
\ No newline at end of file
+
+	@Test
+	@Order(9)
+	public void testPatchAdventure() {
+		String body = "{\"name\": \"Patched Adventure\", \"days\": 7, \"addMeals\": [\"Lunch\", \"Dinner\"], "
+				+ "\"addCrew\": [{\"name\": \"Alex\", \"age\": 30, \"height\": 180, \"weight\": 75, "
+				+ "\"gender\": \"MALE\", \"activity\": \"MODERATE\", \"strategy\": \"mifflin_st_jeor\"}]}";
+
+		given()
+				.contentType(ContentType.JSON)
+				.body(body)
+				.when()
+				.patch("/adventures/{id}", adventureId)
+				.then()
+				.statusCode(200)
+				.body("name", is("Patched Adventure"))
+				.body("days", is(7))
+				.body("crewSize", is(2));
+	}
+
+	@Test
+	@Order(10)
+	public void testPatchAdventureInvalidDays() {
+		given()
+				.contentType(ContentType.JSON)
+				.body("{\"days\": 0}")
+				.when()
+				.patch("/adventures/{id}", adventureId)
+				.then()
+				.statusCode(400);
+	}
+
+	@Test
+	@Order(11)
+	public void testGetAdventureNotModified() {
+		String etag = given()
+				.when()
+				.get("/adventures/{id}", adventureId)
+				.then()
+				.statusCode(200)
+				.header("ETag", notNullValue())
+				.extract().header("ETag");
+
+		given()
+				.header("If-None-Match", etag)
+				.when()
+				.get("/adventures/{id}", adventureId)
+				.then()
+				.statusCode(304);
+
+		given()
+				.when()
+				.queryParam("days", 8)
+				.put("/adventures/{id}/days", adventureId)
+				.then()
+				.statusCode(200);
+
+		// The change bumps the adventure version, so the old tag no longer matches.
+		given()
+				.header("If-None-Match", etag)
+				.when()
+				.get("/adventures/{id}", adventureId)
+				.then()
+				.statusCode(200)
+				.body("days", is(8));
+	}
+}
@@ -548,6 +548,47 @@ public class MealResourceTest {
 		assertEquals(newWeight, meal.getChildMap().get(testIngredientId).getRecipeWeight(), TOLERANCE);
 	}
 
+	@Test
+	public void testPatchIngredientsAppliesAllChanges() {
+		String body = "[{\"ingredientId\": \"" + testIngredientId + "\", \"weight\": 120.0, \"nutrients\": {\"protein\": 0.4, \"fat\": 0.6}, \"pcsWeight\": 30.0}]";
+
+		given()
+			.contentType(ContentType.JSON)
+			.body(body)
+		.when()
+			.patch("/meals/{mealId}/ingredients", testMealId.toString())
+		.then()
+			.statusCode(200)
+			.contentType(ContentType.JSON)
+			.body("id", equalTo(testMealId.toString()));
+
+		// Verify backend state
+		io.hulsbo.model.Ingredient ingredient = (io.hulsbo.model.Ingredient) io.hulsbo.model.Manager.getBaseClass(testIngredientId);
+		Meal meal = (Meal) io.hulsbo.model.Manager.getBaseClass(testMealId);
+		assertEquals(120.0, meal.getChildMap().get(testIngredientId).getRecipeWeight(), TOLERANCE);
+		assertEquals(30.0, ingredient.getPcsWeight(), TOLERANCE);
+		assertEquals(0.4, meal.getNutrientsMap().get("protein"), TOLERANCE);
+		assertEquals(0.6, meal.getNutrientsMap().get("fat"), TOLERANCE);
+	}
+
+	@Test
+	public void testPatchIngredientsRejectsInvalidChangeWithoutApplying() {
+		String body = "[{\"ingredientId\": \"" + testIngredientId + "\", \"weight\": 90.0}, "
+				+ "{\"ingredientId\": \"" + testIngredientId + "\", \"density\": -1.0}]";
+
+		given()
+			.contentType(ContentType.JSON)
+			.body(body)
+		.when()
+			.patch("/meals/{mealId}/ingredients", testMealId.toString())
+		.then()
+			.statusCode(400)
+			.body("message", containsString("Change 1: Density must be greater than 0."));
+
+		Meal meal = (Meal) io.hulsbo.model.Manager.getBaseClass(testMealId);
+		assertEquals(0.0, meal.getChildMap().get(testIngredientId).getRecipeWeight(), TOLERANCE);
+	}
+
 	// --- End New Tests --- 
 
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package io.hulsbo.mapper;
+
+import io.hulsbo.dto.IngredientDTO;
+import io.hulsbo.entities.IngredientEntity;
+import io.hulsbo.model.Manager;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngredientMapperTest {
+
+    private final IngredientMapper mapper = new IngredientMapper();
+
+    private static IngredientEntity entity() {
+        IngredientEntity entity = new IngredientEntity();
+        entity.id = UUID.randomUUID();
+        entity.name = "oats";
+        entity.protein_ratio = new BigDecimal("0.1300");
+        entity.fat_ratio = new BigDecimal("0.0700");
+        entity.carbs_ratio = new BigDecimal("0.5800");
+        entity.fiber_and_ash_ratio = new BigDecimal("0.1000");
+        entity.salt_ratio = new BigDecimal("0.0000");
+        entity.micronutrients = Map.of("iron", 0.00004);
+        return entity;
+    }
+
+    @Test
+    void testCatalogReadIsNotRegistered() {
+        IngredientEntity entity = entity();
+
+        IngredientDTO dto = mapper.toDTO(entity);
+
+        assertNull(Manager.getBaseClass(entity.id));
+        assertEquals(entity.id, dto.id);
+        assertEquals(0.13, dto.nutrientsMap.get("protein"), 1e-12);
+        assertEquals(0.12, dto.nutrientsMap.get("water"), 1e-12);
+        assertEquals(0.00004, dto.nutrientsMap.get("iron"), 1e-12);
+        assertEquals((0.58 + 0.13) * 4000 + 0.07 * 9000, dto.energyDensity, 1e-9);
+    }
+
+    @Test
+    void testDtoWritesRoundTripAndAreValidated() {
+        IngredientDTO dto = mapper.toDTO(entity());
+        dto.nutrientsMap.put("protein", 0.2);
+        dto.nutrientsMap.put("water", 0.05);
+
+        IngredientEntity written = mapper.toEntity(dto);
+
+        assertEquals(new BigDecimal("0.2000"), written.protein_ratio);
+        assertEquals(Map.of("iron", 0.00004), written.micronutrients);
+
+        dto.nutrientsMap.put("fat", 0.9);
+        assertThrows(IllegalArgumentException.class, () -> mapper.toEntity(dto));
+        dto.nutrientsMap.put("fat", 0.07);
+        dto.nutrientsMap.put("unobtainium", 0.1);
+        assertThrows(IllegalArgumentException.class, () -> mapper.toEntity(dto));
+    }
+}
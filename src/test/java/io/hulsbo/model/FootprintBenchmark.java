@@ -0,0 +1,65 @@
+package io.hulsbo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the retained heap per model object. Not a unit test; run it by hand, e.g.
+ * {@code java -cp <test and main classes and dependencies> io.hulsbo.model.FootprintBenchmark [count]}.
+ * <p>Objects are created, linked into meals like in a plan (every ingredient is in one meal) and
+ * unregistered again afterwards; the heap is measured after forced garbage collections.</p>
+ */
+public class FootprintBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Propagation.setMode(PropagationMode.LAZY); // Only the footprint is measured, not recomputation
+
+        System.out.printf("Ingredient (standalone): %6.0f bytes%n", bytesPerObject(count, false));
+        System.out.printf("Ingredient (in a meal):  %6.0f bytes%n", bytesPerObject(count, true));
+    }
+
+    private static double bytesPerObject(int count, boolean inMeal) {
+        List<Ingredient> ingredients = new ArrayList<>(count);
+        List<Meal> meals = new ArrayList<>();
+        long before = usedHeap();
+        long mealBytes = 0;
+        if (inMeal) {
+            // Meals hold 20 ingredients each; their own footprint is measured separately and subtracted.
+            for (int i = 0; i < count / 20; i++) {
+                meals.add(new Meal());
+            }
+            mealBytes = usedHeap() - before;
+        }
+        for (int i = 0; i < count; i++) {
+            Ingredient ingredient = new Ingredient();
+            if (inMeal) {
+                meals.get(i / 20).putChild(ingredient);
+            }
+            ingredients.add(ingredient);
+        }
+        long after = usedHeap();
+        double perObject = (after - before - mealBytes) / (double) count;
+        // Meals grow their child maps as ingredients are added; that growth counts towards the ingredients.
+        for (Ingredient ingredient : ingredients) {
+            Manager.removeBaseClassObject(ingredient.getId());
+        }
+        for (Meal meal : meals) {
+            Manager.removeBaseClassObject(meal.getId());
+        }
+        return perObject;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,77 @@
+package io.hulsbo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HandleTableTest {
+
+    @Test
+    void testLookupsSurviveGrowthAndRemoval() {
+        List<Ingredient> kept = new ArrayList<>();
+        List<Ingredient> removed = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Ingredient ingredient = new Ingredient();
+            (i % 3 == 0 ? removed : kept).add(ingredient);
+        }
+        for (Ingredient ingredient : removed) {
+            Manager.removeBaseClassObject(ingredient.getId());
+        }
+
+        for (Ingredient ingredient : kept) {
+            assertSame(ingredient, Manager.getBaseClass(ingredient.getId()));
+        }
+        for (Ingredient ingredient : removed) {
+            assertNull(Manager.getBaseClass(ingredient.getId()));
+            assertEquals(-1, ingredient.handle);
+        }
+        assertNull(Manager.getBaseClass(UUID.randomUUID()));
+    }
+
+    @Test
+    void testHandlesOfRemovedObjectsAreReused() {
+        Ingredient first = new Ingredient();
+        int handle = first.handle;
+        assertTrue(handle >= 0);
+
+        Manager.removeBaseClassObject(first.getId());
+        Ingredient second = new Ingredient();
+
+        assertEquals(handle, second.handle);
+        assertSame(second, Manager.getBaseClass(second.getId()));
+        assertNull(Manager.getBaseClass(first.getId()));
+    }
+
+    @Test
+    void testRegisteringTheSameIdReplacesTheObject() {
+        UUID id = UUID.randomUUID();
+        Ingredient original = new Ingredient(id);
+        Ingredient replacement = new Ingredient(id);
+
+        assertSame(replacement, Manager.getBaseClass(id));
+        assertEquals(-1, original.handle);
+        assertFalse(Manager.baseClassIndex.remove(original));
+        assertTrue(Manager.baseClassIndex.remove(replacement));
+        assertNull(Manager.getBaseClass(id));
+    }
+
+    @Test
+    void testEdgesNeverResolveToTheNextHolderOfAHandle() {
+        Meal removed = new Meal();
+        Meal kept = new Meal();
+        Ingredient shared = new Ingredient();
+        removed.putChild(shared);
+        kept.putChild(shared);
+
+        Manager.removeBaseClassObject(removed.getId());
+        Meal reusing = new Meal();
+
+        assertEquals(Set.of(kept), Manager.findParents(shared.getId()));
+        assertFalse(shared.parents.contains(reusing));
+    }
+}
@@ -0,0 +1,134 @@
+package io.hulsbo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManagerTest {
+
+    @Test
+    void testListingIsPartitionedByTypeInCreationOrder() {
+        Adventure first = new Adventure();
+        Meal meal = new Meal();
+        Adventure second = new Adventure();
+
+        List<Adventure> adventures = Manager.getAllAdventures();
+        List<Meal> meals = Manager.getAllOf(Meal.class);
+
+        assertTrue(adventures.indexOf(first) < adventures.indexOf(second));
+        assertTrue(meals.contains(meal));
+        assertFalse(Manager.getAllOf(Ingredient.class).stream().anyMatch(ingredient -> ingredient.getId().equals(meal.getId())));
+    }
+
+    @Test
+    void testPagesFollowTheCursor() {
+        Adventure first = new Adventure();
+        Adventure second = new Adventure();
+        Adventure third = new Adventure();
+        Manager.removeBaseClassObject(second.getId());
+
+        List<Adventure> paged = new ArrayList<>();
+        Long cursor = null;
+        do {
+            Manager.Page<Adventure> page = Manager.getPageOf(Adventure.class, cursor, 2);
+            assertTrue(page.getItems().size() <= 2);
+            paged.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(Manager.getAllAdventures(), paged);
+        assertTrue(paged.indexOf(first) < paged.indexOf(third));
+        assertFalse(paged.contains(second));
+        assertThrows(IllegalArgumentException.class, () -> Manager.getPageOf(Adventure.class, null, 0));
+    }
+
+    @Test
+    void testParentsAreFoundFromTheChild() {
+        Adventure adventure = new Adventure();
+        Meal first = new Meal();
+        Meal second = new Meal();
+        Ingredient shared = new Ingredient();
+        adventure.putChild(first);
+        first.putChild(shared);
+        second.putChild(shared);
+
+        assertEquals(Set.of(first, second), Manager.findParents(shared.getId()));
+
+        second.removeChild(shared.getId());
+        assertEquals(Set.of(first), Manager.findParents(shared.getId()));
+
+        Manager.removeBaseClassObject(adventure.getId());
+        assertTrue(Manager.findParents(first.getId()).isEmpty());
+    }
+
+    @Test
+    void testRemovingAnAdventureReclaimsWhatOnlyItHeld() {
+        Adventure adventure = new Adventure();
+        Adventure other = new Adventure();
+        Meal meal = new Meal();
+        Meal sharedMeal = new Meal();
+        Ingredient ingredient = new Ingredient();
+        adventure.putChild(meal);
+        adventure.putChild(sharedMeal);
+        other.putChild(sharedMeal);
+        meal.putChild(ingredient);
+        adventure.putCrewMember("Tester", 30, 180, 75, "MALE", "MODERATE", "mifflin_st_jeor");
+        CrewMember crewMember = adventure.getAllCrewMembers().get(0);
+
+        Manager.removeBaseClassObject(adventure.getId());
+
+        assertNull(Manager.getBaseClass(meal.getId()));
+        assertNull(Manager.getBaseClass(ingredient.getId()));
+        assertNull(Manager.getCrewMember(crewMember.getId()));
+        assertSame(sharedMeal, Manager.getBaseClass(sharedMeal.getId()));
+        assertEquals(Set.of(other), Manager.findParents(sharedMeal.getId()));
+    }
+
+    @Test
+    void testConcurrentGetOrCreateRegistersOneObject() throws Exception {
+        UUID id = UUID.randomUUID();
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Ingredient>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> Manager.getOrCreate(id, Ingredient.class, () -> {
+                    created.incrementAndGet();
+                    return new Ingredient(id);
+                })));
+            }
+            Ingredient first = results.get(0).get();
+            for (Future<Ingredient> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, created.get());
+        assertNull(Manager.getOrCreate(new Meal().getId(), Ingredient.class, Ingredient::new));
+    }
+
+    @Test
+    void testRegisteringTheSameIdReplacesTheObject() {
+        UUID id = UUID.randomUUID();
+        Ingredient original = new Ingredient(id);
+        Ingredient replacement = new Ingredient(id);
+
+        assertSame(replacement, Manager.getBaseClass(id));
+        List<Ingredient> ingredients = Manager.getAllOf(Ingredient.class);
+        assertTrue(ingredients.contains(replacement));
+        assertFalse(ingredients.stream().anyMatch(ingredient -> ingredient == original));
+
+        Manager.removeBaseClassObject(id);
+        assertNull(Manager.getBaseClass(id));
+    }
+}
@@ -0,0 +1,172 @@
+package io.hulsbo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelLocksTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private static ModelLocks.StripeStats statsOf(int stripe) {
+        return ModelLocks.getStripeStats().stream()
+                .filter(stats -> stats.getStripe() == stripe)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static Adventure adventureOnOtherStripeThan(Adventure adventure) {
+        int stripe = ModelLocks.stripeOf(adventure.getId());
+        while (true) {
+            Adventure other = new Adventure();
+            if (ModelLocks.stripeOf(other.getId()) != stripe) {
+                return other;
+            }
+        }
+    }
+
+    @Test
+    void testDifferentAdventuresDoNotContend() throws Exception {
+        Adventure first = new Adventure();
+        Adventure second = adventureOnOtherStripeThan(first);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ModelLocks.WriteLocks locks = ModelLocks.lockForWrite(List.of(first));
+        try {
+            Future<?> otherEdit = executor.submit(() -> ModelLocks.lockForWrite(List.of(second)).releaseAll());
+            otherEdit.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            locks.releaseAll();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testContentionIsCountedPerStripe() throws Exception {
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        int stripe = ModelLocks.stripeOf(adventure.getId());
+        assertEquals(List.of(stripe), List.copyOf(ModelLocks.stripesOf(List.of(meal))));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ModelLocks.WriteLocks locks = ModelLocks.lockForWrite(List.of(adventure));
+        long contendedBefore = statsOf(stripe).getContendedWriteLocks();
+        Future<?> blockedEdit;
+        try {
+            blockedEdit = executor.submit(() -> ModelLocks.lockForWrite(List.of(meal)).releaseAll());
+            assertThrows(TimeoutException.class, () -> blockedEdit.get(100, TimeUnit.MILLISECONDS));
+        } finally {
+            locks.releaseAll();
+        }
+        blockedEdit.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        executor.shutdownNow();
+
+        ModelLocks.StripeStats stats = statsOf(stripe);
+        assertEquals(contendedBefore + 1, stats.getContendedWriteLocks());
+        assertTrue(stats.getWriteWaitMillis() > 0);
+    }
+
+    @Test
+    void testOptimisticReadIsRetriedAfterWrite() {
+        Adventure adventure = new Adventure();
+        int stripe = ModelLocks.stripeOf(adventure.getId());
+        assertEquals("read", ModelLocks.read(adventure, () -> "read"));
+        long failedBefore = statsOf(stripe).getFailedOptimisticReads();
+
+        AtomicInteger attempts = new AtomicInteger();
+        String result = ModelLocks.read(adventure, () -> {
+            if (attempts.getAndIncrement() == 0) {
+                // A writer finishing while the optimistic read runs invalidates it.
+                CompletableFuture.runAsync(() -> ModelLocks.lockForWrite(List.of(adventure)).releaseAll()).join();
+            }
+            return "attempt " + attempts.get();
+        });
+
+        assertEquals("attempt 2", result);
+        assertEquals(failedBefore + 1, statsOf(stripe).getFailedOptimisticReads());
+    }
+
+    @Test
+    void testObjectMarkedStaleDuringReadIsRefreshedUnderWriteLocks() {
+        PropagationMode previousMode = Propagation.getMode();
+        Propagation.setMode(PropagationMode.LAZY);
+        try {
+            Adventure adventure = new Adventure();
+            Meal meal = new Meal();
+            adventure.putChild(meal);
+            Ingredient ingredient = new Ingredient();
+            ingredient.setNutrientRatio("protein", 1.0);
+            ingredient.normalizeNutrientRatiosAndPropagate();
+            meal.putChild(ingredient);
+            meal.modifyWeightOfIngredient(ingredient.getId(), 100.0);
+            meal.updateAndPropagate();
+            double before = ModelLocks.read(adventure, adventure::getWeight);
+            assertFalse(adventure.isDirty());
+
+            AtomicInteger attempts = new AtomicInteger();
+            AtomicBoolean refreshedByReader = new AtomicBoolean();
+            double after = ModelLocks.read(adventure, () -> {
+                if (attempts.getAndIncrement() == 0) {
+                    // A committed edit marks the adventure as stale while the optimistic read runs.
+                    CompletableFuture.runAsync(() -> {
+                        try (EditScope tx = Manager.beginEdit(meal.getId())) {
+                            meal.modifyWeightOfIngredient(ingredient.getId(), 250.0);
+                            meal.updateAndPropagate();
+                        }
+                    }).join();
+                    double weight = adventure.getWeight();
+                    refreshedByReader.set(!adventure.isDirty());
+                    return weight;
+                }
+                return adventure.getWeight();
+            });
+
+            assertFalse(refreshedByReader.get(), "The optimistic reader must not refresh without write locks.");
+            assertEquals(2, attempts.get());
+            assertFalse(adventure.isDirty());
+            assertEquals(before * 2.5, after, 1e-9);
+        } finally {
+            Propagation.setMode(previousMode);
+        }
+    }
+
+    @Test
+    void testSharedIngredientIsLockedBeforeItChanges() {
+        Adventure edited = new Adventure();
+        while (ModelLocks.stripeOf(edited.getId()) == 0) {
+            edited = new Adventure();
+        }
+        Adventure other = new Adventure();
+        while (ModelLocks.stripeOf(other.getId()) >= ModelLocks.stripeOf(edited.getId())) {
+            other = new Adventure();
+        }
+        Meal editedMeal = new Meal();
+        Meal otherMeal = new Meal();
+        edited.putChild(editedMeal);
+        other.putChild(otherMeal);
+        Ingredient shared = new Ingredient();
+        editedMeal.putChild(shared);
+        otherMeal.putChild(shared);
+        long otherVersion = other.getVersion();
+
+        // Another edit holds the other adventure's stripe, which the scope needs out of order.
+        ModelLocks.WriteLocks otherEdit = ModelLocks.lockForWrite(List.of(other));
+        try {
+            assertThrows(IllegalStateException.class, () -> {
+                try (EditScope tx = Manager.beginEdit(editedMeal.getId())) {
+                    shared.setDensity(2.0);
+                }
+            });
+        } finally {
+            otherEdit.releaseAll();
+        }
+
+        assertEquals(1.0, shared.getDensity());
+        assertEquals(otherVersion, other.getVersion());
+    }
+}
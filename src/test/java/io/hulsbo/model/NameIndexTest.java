@@ -0,0 +1,67 @@
+package io.hulsbo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NameIndexTest {
+
+    private static Ingredient ingredient(String name) {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setName(name);
+        return ingredient;
+    }
+
+    @Test
+    void testLookupIgnoresCaseAndSupportsPrefixes() {
+        Meal meal = new Meal();
+        Ingredient oats = ingredient("Oats");
+        Ingredient oatMilk = ingredient("Oat milk");
+        Ingredient raisins = ingredient("Raisins");
+        meal.putChild(oats);
+        meal.putChild(oatMilk);
+        meal.putChild(raisins);
+
+        assertSame(oats, meal.findChildByName("OATS"));
+        assertNull(meal.findChildByName("oat"));
+        assertEquals(List.of(oatMilk, oats), meal.findChildrenByNamePrefix("oAt"));
+        assertEquals(List.of(), meal.findChildrenByNamePrefix("rice"));
+    }
+
+    @Test
+    void testRenamedChildIsFoundUnderItsNewName() {
+        Meal meal = new Meal();
+        Ingredient ingredient = ingredient("Rice");
+        meal.putChild(ingredient);
+
+        ingredient.setName("Brown rice");
+
+        assertNull(meal.findChildByName("Rice"));
+        assertSame(ingredient, meal.findChildByName("brown rice"));
+        meal.removeChild("BROWN RICE");
+        assertTrue(meal.getChildMap().isEmpty());
+        assertEquals(0, meal.nameIndex.size());
+    }
+
+    @Test
+    void testChildrenMayShareAName() {
+        Meal first = new Meal();
+        Meal second = new Meal();
+        Ingredient salt = ingredient("Salt");
+        Ingredient seaSalt = ingredient("Salt");
+        first.putChild(salt);
+        second.putChild(salt);
+        first.putChild(seaSalt);
+
+        first.removeChild(salt.getId());
+        assertSame(seaSalt, first.findChildByName("salt"));
+
+        // A shared child is renamed in the index of every parent.
+        salt.setName("Rock salt");
+        assertSame(salt, second.findChildByName("rock salt"));
+        assertSame(seaSalt, first.findChildByName("salt"));
+        assertEquals(1, first.nameIndex.size());
+    }
+}
@@ -0,0 +1,474 @@
+package io.hulsbo.model;
+
+import io.hulsbo.util.model.baseclass.ChildWrapper;
+import io.hulsbo.util.model.baseclass.FixedPoint;
+import io.hulsbo.util.model.baseclass.NutrientRegistry;
+import io.hulsbo.util.model.baseclass.NutrientsMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PropagationEngineTest {
+
+    private static class CountingMeal extends Meal {
+        int recomputations;
+
+        @Override
+        protected void recompute() {
+            recomputations++;
+            super.recompute();
+        }
+    }
+
+    private static class CountingAdventure extends Adventure {
+        int recomputations;
+
+        @Override
+        protected void recompute() {
+            recomputations++;
+            super.recompute();
+        }
+    }
+
+    private static Ingredient ingredient(String nutrient) {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setNutrientRatio(nutrient, 1.0);
+        ingredient.normalizeNutrientRatiosAndPropagate();
+        return ingredient;
+    }
+
+    @Test
+    void testSharedIngredientRecomputesEachAncestorOnce() {
+        CountingAdventure adventure = new CountingAdventure();
+        CountingMeal breakfast = new CountingMeal();
+        CountingMeal dinner = new CountingMeal();
+        adventure.putChild(breakfast);
+        adventure.putChild(dinner);
+
+        Ingredient pantrySalt = new Ingredient();
+        breakfast.putChild(pantrySalt);
+        dinner.putChild(pantrySalt);
+        breakfast.modifyWeightOfIngredient(pantrySalt.getId(), 5.0);
+        dinner.modifyWeightOfIngredient(pantrySalt.getId(), 5.0);
+        breakfast.updateAndPropagate();
+        dinner.updateAndPropagate();
+
+        adventure.recomputations = 0;
+        breakfast.recomputations = 0;
+        dinner.recomputations = 0;
+
+        pantrySalt.setNutrientRatio("salt", 1.0);
+        pantrySalt.normalizeNutrientRatiosAndPropagate();
+
+        assertEquals(1, breakfast.recomputations);
+        assertEquals(1, dinner.recomputations);
+        assertEquals(1, adventure.recomputations, "Adventure reached through two meals should be recomputed once");
+    }
+
+    @Test
+    void testEditScopeCommitsOncePerObject() {
+        CountingAdventure adventure = new CountingAdventure();
+        CountingMeal meal = new CountingMeal();
+        adventure.putChild(meal);
+        Ingredient oats = new Ingredient();
+        Ingredient nuts = new Ingredient();
+        meal.putChild(oats);
+        meal.putChild(nuts);
+
+        adventure.recomputations = 0;
+        meal.recomputations = 0;
+
+        Manager.edit(adventure.getId(), tx -> {
+            meal.modifyWeightOfIngredient(oats.getId(), 80.0);
+            meal.modifyWeightOfIngredient(nuts.getId(), 40.0);
+            meal.updateAndPropagate();
+            oats.setNutrientRatio("carbs", 1.0);
+            oats.normalizeNutrientRatiosAndPropagate();
+            adventure.setDays(4);
+            // Nested scopes join the outer one.
+            Manager.edit(meal.getId(), inner -> inner.getRoot(Meal.class).setName("Porridge"));
+            assertEquals(0, meal.recomputations, "Propagation should be deferred inside the scope");
+        });
+
+        assertEquals(1, meal.recomputations);
+        assertEquals(1, adventure.recomputations);
+        assertEquals(80.0 / 120.0, adventure.getNutrientsMap().get("carbs"), 1e-9);
+    }
+
+    @Test
+    void testIncrementalAggregationMatchesFullResum() {
+        Meal meal = new Meal();
+        Ingredient[] ingredients = new Ingredient[10];
+        for (int i = 0; i < ingredients.length; i++) {
+            ingredients[i] = new Ingredient();
+            ingredients[i].setNutrientRatio("protein", 0.1 * (i % 5));
+            ingredients[i].setNutrientRatio("carbs", 0.5);
+            ingredients[i].normalizeNutrientRatiosAndPropagate();
+            meal.putChild(ingredients[i]);
+            meal.modifyWeightOfIngredient(ingredients[i].getId(), 10.0 + i);
+        }
+        meal.updateAndPropagate();
+
+        // Repeatedly change a single ingredient; the meal applies these as deltas.
+        for (int round = 0; round < 100; round++) {
+            Ingredient changed = ingredients[round % ingredients.length];
+            changed.setNutrientRatios(Map.of("protein", 0.01 * (round % 40), "carbs", 0.3, "fat", 0.2));
+            changed.normalizeNutrientRatiosAndPropagate();
+        }
+
+        for (String nutrient : NutrientsMap.NUTRIENTS) {
+            double expected = 0.0;
+            for (ChildWrapper childWrapper : meal.getChildMap().values()) {
+                expected += childWrapper.getChild().getNutrientsMap().get(nutrient) * childWrapper.getRatio();
+            }
+            assertEquals(expected, meal.getNutrientsMap().get(nutrient), 1e-9, nutrient);
+        }
+    }
+
+    @Test
+    void testMicronutrientsAggregateSparsely() {
+        int sodium = NutrientRegistry.register("sodium");
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        Ingredient salted = new Ingredient();
+        Ingredient plain = new Ingredient();
+        meal.putChild(salted);
+        meal.putChild(plain);
+        plain.setNutrientRatios(Map.of("carbs", 1.0));
+        plain.normalizeNutrientRatiosAndPropagate();
+        salted.setNutrientRatios(Map.of("salt", 0.01, "water", 0.99, "sodium", 0.004));
+        salted.normalizeNutrientRatiosAndPropagate();
+        meal.modifyWeightOfIngredient(salted.getId(), 100.0);
+        meal.modifyWeightOfIngredient(plain.getId(), 300.0);
+        meal.updateAndPropagate();
+
+        assertEquals(0.001, meal.getNutrientsMap().getMicronutrient(sodium), 1e-12);
+        assertEquals(0.001, adventure.getNutrientsMap().get("sodium"), 1e-12);
+        assertEquals(1.0, meal.getNutrientsMap().sum(), 1e-9, "Micronutrients are not part of the 100% sum");
+        assertFalse(plain.getNutrientsMap().containsKey("sodium"));
+
+        salted.setNutrientRatios(Map.of("sodium", 0.0));
+        salted.normalizeNutrientRatiosAndPropagate();
+        assertFalse(adventure.getNutrientsMap().hasMicronutrients());
+    }
+
+    @Test
+    void testParallelModeMatchesSerialResult() {
+        PropagationMode previousMode = Propagation.getMode();
+        int previousThreshold = Propagation.getParallelThreshold();
+        try {
+            Ingredient sharedOil = new Ingredient();
+            sharedOil.setNutrientRatio("fat", 1.0);
+            sharedOil.normalizeNutrientRatiosAndPropagate();
+            Ingredient rice = new Ingredient();
+            rice.setNutrientRatio("carbs", 1.0);
+            rice.normalizeNutrientRatiosAndPropagate();
+
+            CountingAdventure[] adventures = new CountingAdventure[8];
+            CountingMeal[] meals = new CountingMeal[adventures.length * 3];
+            for (int a = 0; a < adventures.length; a++) {
+                adventures[a] = new CountingAdventure();
+                for (int m = 0; m < 3; m++) {
+                    CountingMeal meal = new CountingMeal();
+                    meals[a * 3 + m] = meal;
+                    adventures[a].putChild(meal);
+                    meal.putChild(sharedOil);
+                    meal.putChild(rice);
+                    meal.modifyWeightOfIngredient(sharedOil.getId(), 10.0 + m);
+                    meal.modifyWeightOfIngredient(rice.getId(), 50.0 + a);
+                    meal.updateAndPropagate();
+                }
+                adventures[a].recomputations = 0;
+            }
+            for (CountingMeal meal : meals) {
+                meal.recomputations = 0;
+            }
+
+            Propagation.setMode(PropagationMode.PARALLEL);
+            Propagation.setParallelThreshold(2);
+            sharedOil.setNutrientRatios(Map.of("fat", 0.5, "protein", 0.5));
+            sharedOil.normalizeNutrientRatiosAndPropagate();
+
+            for (CountingMeal meal : meals) {
+                assertEquals(1, meal.recomputations);
+            }
+            for (int a = 0; a < adventures.length; a++) {
+                assertEquals(1, adventures[a].recomputations);
+                double expectedProtein = 0.0;
+                for (int m = 0; m < 3; m++) {
+                    expectedProtein += 0.5 * (10.0 + m) / (60.0 + m + a) / 3;
+                }
+                assertEquals(expectedProtein, adventures[a].getNutrientsMap().get("protein"), 1e-9);
+            }
+        } finally {
+            Propagation.setMode(previousMode);
+            Propagation.setParallelThreshold(previousThreshold);
+        }
+    }
+
+    @Test
+    void testTopologicalLevelsGroupIndependentObjects() {
+        Adventure adventure = new Adventure();
+        Meal breakfast = new Meal();
+        Meal dinner = new Meal();
+        adventure.putChild(breakfast);
+        adventure.putChild(dinner);
+        Ingredient ingredient = new Ingredient();
+        breakfast.putChild(ingredient);
+        dinner.putChild(ingredient);
+
+        Set<BaseClass> nodes = new LinkedHashSet<>(List.of(adventure, dinner, breakfast, ingredient));
+        List<List<BaseClass>> levels = PropagationEngine.topologicalLevels(nodes);
+
+        assertEquals(3, levels.size());
+        assertEquals(List.of(ingredient), levels.get(0));
+        assertEquals(Set.of(breakfast, dinner), Set.copyOf(levels.get(1)));
+        assertEquals(List.of(adventure), levels.get(2));
+    }
+
+    @Test
+    void testVersionsBumpOnChanges() {
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        Ingredient ingredient = new Ingredient();
+        meal.putChild(ingredient);
+
+        long adventureVersion = adventure.getVersion();
+        long mealVersion = meal.getVersion();
+        long listVersion = Manager.getAdventuresVersion();
+
+        meal.modifyWeightOfIngredient(ingredient.getId(), 25.0);
+        meal.updateAndPropagate();
+        assertTrue(meal.getVersion() > mealVersion);
+        assertTrue(adventure.getVersion() > adventureVersion);
+        assertTrue(Manager.getAdventuresVersion() > listVersion);
+
+        // Changes that don't affect aggregates still change the serialized state.
+        adventureVersion = adventure.getVersion();
+        ingredient.setDensity(0.9);
+        assertTrue(adventure.getVersion() > adventureVersion);
+    }
+
+    @Test
+    void testListenersReceiveRecomputedObjects() {
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        Ingredient ingredient = new Ingredient();
+        meal.putChild(ingredient);
+
+        List<Set<BaseClass>> runs = new ArrayList<>();
+        PropagationListener listener = recomputed -> runs.add(Set.copyOf(recomputed));
+        Propagation.addListener(listener);
+        try {
+            Manager.edit(meal.getId(), tx -> {
+                meal.modifyWeightOfIngredient(ingredient.getId(), 30.0);
+                meal.updateAndPropagate();
+            });
+        } finally {
+            Propagation.removeListener(listener);
+        }
+
+        assertEquals(1, runs.size(), "One commit should notify listeners once");
+        assertEquals(Set.of(meal, adventure), runs.get(0));
+    }
+
+    @Test
+    void testTopologicalOrderPutsChildrenFirst() {
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        Ingredient ingredient = new Ingredient();
+        meal.putChild(ingredient);
+
+        Set<BaseClass> nodes = new LinkedHashSet<>(List.of(adventure, ingredient, meal));
+        List<BaseClass> order = PropagationEngine.topologicalOrder(nodes);
+
+        assertEquals(List.of(ingredient, meal, adventure), order);
+    }
+
+    @Test
+    void testCycleIsRejected() {
+        Meal outer = new Meal();
+        Meal inner = new Meal();
+        outer.putChild(inner, 1.0, 0.0);
+
+        assertThrows(IllegalArgumentException.class, () -> inner.putChild(outer, 1.0, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> outer.putChild(outer, 1.0, 0.0));
+    }
+
+    @Test
+    void testCycleIsDetectedDuringPropagation() {
+        Meal first = new Meal();
+        Meal second = new Meal();
+        // Bypass putChild to simulate a corrupted graph.
+        first.addParent(second);
+        second.addParent(first);
+
+        assertThrows(IllegalStateException.class, first::updateAndPropagate);
+    }
+
+    @Test
+    void testRatiosDoNotDriftOverAddAndRemove() {
+        Adventure adventure = new Adventure();
+        Meal kept = new Meal();
+        adventure.putChild(kept);
+        for (int i = 0; i < 200; i++) {
+            Meal added = new Meal();
+            adventure.putChild(added);
+            adventure.putChild(new Meal());
+            adventure.removeChild(added.getId());
+        }
+
+        double sum = 0;
+        for (ChildWrapper wrapper : adventure.getChildMap().values()) {
+            // Siblings are never rescaled, so every meal keeps exactly the equal share it was given.
+            assertEquals(FixedPoint.ONE, wrapper.weightUnits());
+            assertEquals(1.0 / adventure.getChildMap().size(), wrapper.getRatio(), 0.0);
+            sum += wrapper.getRatio();
+        }
+        assertEquals(1.0, sum, 1e-12);
+    }
+
+    @Test
+    void testWeighingAnIngredientLeavesItsSiblingsAlone() {
+        Meal meal = new Meal();
+        Ingredient protein = ingredient("protein");
+        Ingredient fat = ingredient("fat");
+        meal.putChild(protein);
+        meal.putChild(fat);
+        meal.modifyWeightOfIngredient(protein.getId(), 100.0);
+        meal.modifyWeightOfIngredient(fat.getId(), 300.0);
+        meal.updateAndPropagate();
+        long proteinWeight = meal.getChildMap().get(protein.getId()).weightUnits();
+
+        meal.modifyWeightOfIngredient(fat.getId(), 100.0);
+        meal.updateAndPropagate();
+
+        assertEquals(proteinWeight, meal.getChildMap().get(protein.getId()).weightUnits());
+        assertEquals(0.5, meal.getChildMap().get(protein.getId()).getRatio(), 1e-12);
+        assertEquals(0.5, meal.getNutrientsMap().get("protein"), 1e-9);
+        assertEquals(0.5, meal.getNutrientsMap().get("fat"), 1e-9);
+    }
+
+    @Test
+    void testPropagationStopsAtAnAncestorThatDidNotChange() {
+        CountingAdventure adventure = new CountingAdventure();
+        CountingMeal meal = new CountingMeal();
+        adventure.putChild(meal);
+        Ingredient weighed = ingredient("protein");
+        Ingredient unweighed = new Ingredient();
+        meal.putChild(weighed);
+        meal.putChild(unweighed);
+        meal.modifyWeightOfIngredient(weighed.getId(), 100.0);
+        meal.updateAndPropagate();
+        adventure.recomputations = 0;
+        meal.recomputations = 0;
+        long adventureVersion = adventure.getVersion();
+        Propagation.Stats before = Propagation.getStats();
+
+        // Without a recipe weight the ingredient has no share in the meal, so the meal comes out unchanged.
+        unweighed.setNutrientRatio("fat", 1.0);
+        unweighed.normalizeNutrientRatiosAndPropagate();
+
+        Propagation.Stats after = Propagation.getStats();
+        assertEquals(1, meal.recomputations);
+        assertEquals(0, adventure.recomputations);
+        // Not recomputed, but republished, since its serialized state embeds the changed ingredient.
+        assertTrue(adventure.getVersion() > adventureVersion, "Serialized state embeds the ingredient");
+        assertEquals(1, after.getCutoffs() - before.getCutoffs());
+        assertEquals(1, after.getSkippedRecomputations() - before.getSkippedRecomputations());
+    }
+
+    @Test
+    void testNoOpWeightEditStopsAtTheMeal() {
+        CountingAdventure adventure = new CountingAdventure();
+        CountingMeal meal = new CountingMeal();
+        adventure.putChild(meal);
+        Ingredient ingredient = ingredient("fat");
+        meal.putChild(ingredient);
+        meal.modifyWeightOfIngredient(ingredient.getId(), 80.0);
+        meal.updateAndPropagate();
+        adventure.recomputations = 0;
+        meal.recomputations = 0;
+        long mealVersion = meal.getVersion();
+        long adventureVersion = adventure.getVersion();
+
+        meal.modifyWeightOfIngredient(ingredient.getId(), 80.0);
+        meal.updateAndPropagate();
+        assertEquals(1, meal.recomputations);
+        assertEquals(0, adventure.recomputations);
+        // Nothing changed, so nothing gets a new version.
+        assertEquals(mealVersion, meal.getVersion());
+        assertEquals(adventureVersion, adventure.getVersion());
+
+        // A real re-weighing changes the ratios the adventure reads, even with a single ingredient.
+        meal.modifyWeightOfIngredient(ingredient.getId(), 90.0);
+        meal.updateAndPropagate();
+        assertEquals(1, adventure.recomputations);
+    }
+
+    @Test
+    void testRenameRecomputesNothing() {
+        CountingAdventure adventure = new CountingAdventure();
+        CountingMeal meal = new CountingMeal();
+        adventure.putChild(meal);
+        Ingredient ingredient = ingredient("carbs");
+        meal.putChild(ingredient);
+        adventure.recomputations = 0;
+        meal.recomputations = 0;
+        long mealVersion = meal.getVersion();
+
+        ingredient.setName("Oats");
+
+        assertEquals(0, meal.recomputations);
+        assertEquals(0, adventure.recomputations);
+        assertTrue(meal.getVersion() > mealVersion);
+    }
+
+    @Test
+    void testOwnStateChangeIsPublishedWithUnchangedAggregates() {
+        Adventure adventure = new Adventure();
+        long version = adventure.getVersion();
+
+        // Without crew or meals the weight stays zero, but the days are part of the serialized state.
+        adventure.setDays(4);
+
+        assertTrue(adventure.getVersion() > version);
+    }
+
+    @Test
+    void testLazyRefreshResetsTheChangeFlags() {
+        PropagationMode previousMode = Propagation.getMode();
+        try {
+            Propagation.setMode(PropagationMode.LAZY);
+            CountingAdventure adventure = new CountingAdventure();
+            CountingMeal meal = new CountingMeal();
+            adventure.putChild(meal);
+            Ingredient ingredient = ingredient("protein");
+            meal.putChild(ingredient);
+            meal.modifyWeightOfIngredient(ingredient.getId(), 80.0);
+            meal.updateAndPropagate();
+            adventure.getNutrientsMap(); // Refreshes the stale chain.
+
+            Propagation.setMode(PropagationMode.EAGER);
+            adventure.recomputations = 0;
+            meal.recomputations = 0;
+            meal.updateAndPropagate();
+
+            // The refresh consumed the structural changes, so an unchanged meal cuts off the run.
+            assertEquals(1, meal.recomputations);
+            assertEquals(0, adventure.recomputations);
+        } finally {
+            Propagation.setMode(previousMode);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.hulsbo.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PropagationModeTest {
+
+    private static final double TOLERANCE = 1e-9;
+    private PropagationMode previousMode;
+
+    @BeforeEach
+    void setUp() {
+        previousMode = Propagation.getMode();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Propagation.setMode(previousMode);
+    }
+
+    private Ingredient ingredient(String name, double protein, double fat) {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setName(name);
+        ingredient.setNutrientRatio("protein", protein);
+        ingredient.setNutrientRatio("fat", fat);
+        ingredient.normalizeNutrientRatiosAndPropagate();
+        return ingredient;
+    }
+
+    @Test
+    void testLazyModeMarksAncestorsInsteadOfRecomputing() {
+        Propagation.setMode(PropagationMode.LAZY);
+
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        Ingredient ingredient = ingredient("Lazy Oats", 0.5, 0.5);
+        meal.putChild(ingredient);
+        meal.modifyWeightOfIngredient(ingredient.getId(), 100.0);
+        meal.updateAndPropagate();
+
+        assertTrue(meal.isDirty());
+        assertTrue(adventure.isDirty());
+
+        // Reading an aggregate recomputes the stale chain once.
+        assertEquals(0.5, adventure.getNutrientsMap().get("protein"), TOLERANCE);
+        assertFalse(adventure.isDirty());
+        assertFalse(meal.isDirty());
+    }
+
+    @Test
+    void testInfoRefreshesStaleObjectsThroughTheLocks() {
+        Propagation.setMode(PropagationMode.LAZY);
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        Ingredient ingredient = ingredient("Printed Beans", 0.4, 0.2);
+        meal.putChild(ingredient);
+        meal.modifyWeightOfIngredient(ingredient.getId(), 60.0);
+        meal.updateAndPropagate();
+        assertTrue(adventure.isDirty());
+
+        String info = ModelLocks.read(adventure, adventure::renderInfo);
+        adventure.getInfo();
+
+        assertFalse(adventure.isDirty());
+        assertFalse(meal.isDirty());
+        assertTrue(info.endsWith("END OF SUMMARY" + System.lineSeparator()));
+    }
+
+    @Test
+    void testLazyModeTellsListenersWhatWasMarkedStale() {
+        Propagation.setMode(PropagationMode.LAZY);
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        Ingredient ingredient = ingredient("Noted Rice", 0.3, 0.1);
+        meal.putChild(ingredient);
+        adventure.getWeight();
+
+        List<Set<BaseClass>> marked = new ArrayList<>();
+        PropagationListener listener = new PropagationListener() {
+            @Override
+            public void propagated(Set<BaseClass> recomputed) {
+            }
+
+            @Override
+            public void markedStale(Set<BaseClass> stale) {
+                marked.add(Set.copyOf(stale));
+            }
+        };
+        Propagation.addListener(listener);
+        try {
+            meal.modifyWeightOfIngredient(ingredient.getId(), 80.0);
+            meal.updateAndPropagate();
+            // Already stale, so nothing is newly marked.
+            meal.updateAndPropagate();
+        } finally {
+            Propagation.removeListener(listener);
+        }
+
+        assertEquals(List.of(Set.of(meal, adventure)), marked);
+    }
+
+    @Test
+    void testLazyAndEagerModesAgree() {
+        double[] weights = new double[2];
+        PropagationMode[] modes = {PropagationMode.EAGER, PropagationMode.LAZY};
+
+        for (int i = 0; i < modes.length; i++) {
+            Propagation.setMode(modes[i]);
+            Adventure adventure = new Adventure();
+            adventure.setDays(3);
+            adventure.putCrewMember("Tester", 30, 180, 75, "MALE", "MODERATE", "mifflin_st_jeor");
+            Meal meal = new Meal();
+            adventure.putChild(meal);
+            Ingredient ingredient = ingredient("Agreeing Nuts", 0.2, 0.6);
+            meal.putChild(ingredient);
+            meal.modifyWeightOfIngredient(ingredient.getId(), 50.0);
+            meal.updateAndPropagate();
+            weights[i] = adventure.getWeight();
+        }
+
+        assertTrue(weights[0] > 0);
+        assertEquals(weights[0], weights[1], TOLERANCE);
+    }
+}
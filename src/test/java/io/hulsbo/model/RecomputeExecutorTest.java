@@ -0,0 +1,103 @@
+package io.hulsbo.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecomputeExecutorTest {
+
+    private static final long TIMEOUT_MS = 5000;
+    private PropagationMode previousMode;
+
+    private static class CountingAdventure extends Adventure {
+        volatile int recomputations;
+
+        @Override
+        protected void recompute() {
+            recomputations++;
+            super.recompute();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        previousMode = Propagation.getMode();
+        Propagation.setMode(PropagationMode.ASYNC);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Propagation.setMode(previousMode);
+    }
+
+    @Test
+    void testAsyncModeReachesSameStateAsEager() {
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        Ingredient ingredient = new Ingredient();
+        long version;
+        try (EditScope tx = Manager.beginEdit(adventure.getId())) {
+            adventure.putChild(meal);
+            meal.putChild(ingredient);
+            ingredient.setNutrientRatio("protein", 1.0);
+            ingredient.normalizeNutrientRatiosAndPropagate();
+            meal.modifyWeightOfIngredient(ingredient.getId(), 120.0);
+            meal.updateAndPropagate();
+            tx.close();
+            version = tx.getVersion();
+        }
+
+        assertTrue(version > 0);
+        assertEquals(version, RecomputeExecutor.requestedVersion(meal.getId()));
+        assertTrue(RecomputeExecutor.awaitVersion(adventure.getId(), version, TIMEOUT_MS));
+        assertEquals(1.0, meal.getNutrientsMap().get("protein"), 1e-9);
+        assertEquals(1.0, adventure.getNutrientsMap().get("protein"), 1e-9);
+    }
+
+    @Test
+    void testQueuedChangesAreCoalesced() {
+        CountingAdventure adventure = new CountingAdventure();
+        Meal meal = new Meal();
+        adventure.putChild(meal);
+        Ingredient ingredient = new Ingredient();
+        ingredient.setNutrientRatio("protein", 1.0);
+        ingredient.normalizeNutrientRatiosAndPropagate();
+        awaitOwnLane(ingredient);
+        meal.putChild(ingredient);
+        Ingredient other = new Ingredient();
+        other.setNutrientRatio("fat", 1.0);
+        other.normalizeNutrientRatiosAndPropagate();
+        awaitOwnLane(other);
+        meal.putChild(other);
+        meal.modifyWeightOfIngredient(other.getId(), 10.0);
+        assertTrue(RecomputeExecutor.awaitVersion(adventure.getId(), RecomputeExecutor.requestedVersion(adventure.getId()), TIMEOUT_MS));
+        adventure.recomputations = 0;
+
+        long version;
+        // Hold the adventure's lock so the lane cannot start while changes pile up.
+        ModelLocks.WriteLocks locks = ModelLocks.lockForWrite(List.of(adventure));
+        try {
+            for (int i = 1; i <= 20; i++) {
+                meal.modifyWeightOfIngredient(ingredient.getId(), (double) i);
+                meal.updateAndPropagate();
+            }
+            version = RecomputeExecutor.requestedVersion(adventure.getId());
+        } finally {
+            locks.releaseAll();
+        }
+
+        assertTrue(RecomputeExecutor.awaitVersion(adventure.getId(), version, TIMEOUT_MS));
+        assertTrue(adventure.recomputations <= 2, "20 queued changes should be coalesced, got " + adventure.recomputations + " recomputations");
+        assertEquals(20.0 / 30.0, adventure.getNutrientsMap().get("protein"), 1e-9);
+    }
+
+    // A lone ingredient is its own root; its lane must finish before it joins the adventure, or that late
+    // run would recompute the adventure too.
+    private static void awaitOwnLane(BaseClass baseClass) {
+        assertTrue(RecomputeExecutor.awaitVersion(baseClass.getId(), RecomputeExecutor.requestedVersion(baseClass.getId()), TIMEOUT_MS));
+    }
+}
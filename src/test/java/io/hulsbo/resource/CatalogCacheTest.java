@@ -0,0 +1,90 @@
+package io.hulsbo.resource;
+
+import io.hulsbo.dto.IngredientDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<UUID, IngredientDTO> loader = id -> {
+        loads.incrementAndGet();
+        IngredientDTO dto = new IngredientDTO();
+        dto.id = id;
+        return dto;
+    };
+    private CatalogCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CatalogCache();
+        cache.maxSize = 2;
+    }
+
+    @Test
+    void testHitsAreServedWithoutLoading() {
+        UUID id = UUID.randomUUID();
+
+        IngredientDTO first = cache.get(id, loader);
+        IngredientDTO second = cache.get(id, loader);
+
+        assertEquals(first.id, second.id);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    void testCallersCannotModifyTheCachedEntry() {
+        UUID id = UUID.randomUUID();
+        IngredientDTO loaded = cache.get(id, loader);
+        loaded.name = "Changed by the first caller";
+        IngredientDTO hit = cache.get(id, loader);
+        hit.nutrientsMap.put("protein", 0.5);
+
+        IngredientDTO next = cache.get(id, loader);
+        assertNull(next.name);
+        assertTrue(next.nutrientsMap.isEmpty());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvictedBeyondTheBound() {
+        UUID oldest = UUID.randomUUID();
+        UUID unused = UUID.randomUUID();
+        cache.get(oldest, loader);
+        cache.get(unused, loader);
+        cache.get(oldest, loader); // Used again, so the other entry is now the least recently used.
+        cache.get(UUID.randomUUID(), loader);
+
+        assertEquals(2, cache.getStats().getSize());
+        assertEquals(1, cache.getStats().getEvictions());
+        cache.get(oldest, loader);
+        assertEquals(3, loads.get());
+        cache.get(unused, loader);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testInvalidationForcesReloadAndIsNotUndoneByAnOverlappingLoad() {
+        UUID id = UUID.randomUUID();
+        IngredientDTO stale = cache.get(id, loader);
+        cache.invalidate(id);
+        assertNotSame(stale, cache.get(id, loader));
+
+        UUID racing = UUID.randomUUID();
+        cache.get(racing, key -> {
+            cache.invalidate(key); // A writer commits while the row is being loaded.
+            return loader.apply(key);
+        });
+        assertEquals(1, cache.getStats().getSize());
+        cache.get(racing, loader);
+        assertEquals(4, loads.get());
+    }
+}
@@ -0,0 +1,90 @@
+package io.hulsbo.resource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.hulsbo.model.*;
+import io.hulsbo.util.jackson.CustomJacksonProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelSnapshotsTest {
+
+    private final ObjectMapper mapper = new CustomJacksonProvider().getContext(ObjectMapper.class);
+    private ModelSnapshots snapshots;
+
+    @BeforeEach
+    void setUp() {
+        snapshots = new ModelSnapshots();
+        snapshots.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        snapshots.shutdown();
+    }
+
+    private static Ingredient ingredient(String nutrient) {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setNutrientRatio(nutrient, 1.0);
+        ingredient.normalizeNutrientRatiosAndPropagate();
+        return ingredient;
+    }
+
+    @Test
+    void testSnapshotMatchesLiveSerialization() {
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+        Ingredient ingredient = ingredient("protein");
+        adventure.putChild(meal);
+        meal.putChild(ingredient);
+        meal.modifyWeightOfIngredient(ingredient.getId(), 100.0);
+        meal.updateAndPropagate();
+
+        assertEquals(mapper.valueToTree(adventure), snapshots.read(adventure));
+        assertEquals(mapper.valueToTree(meal), snapshots.read(meal));
+    }
+
+    @Test
+    void testCommitRebuildsOnlyChangedPath() {
+        Adventure adventure = new Adventure();
+        Meal changed = new Meal();
+        Meal unchanged = new Meal();
+        Ingredient ingredient = ingredient("protein");
+        adventure.putChild(changed);
+        adventure.putChild(unchanged);
+        changed.putChild(ingredient);
+        unchanged.putChild(ingredient("fat"));
+        JsonNode before = snapshots.read(adventure);
+
+        changed.modifyWeightOfIngredient(ingredient.getId(), 50.0);
+        changed.updateAndPropagate();
+        JsonNode after = snapshots.read(adventure);
+
+        assertNotSame(before, after);
+        assertSame(childOf(before, unchanged), childOf(after, unchanged));
+        assertNotSame(childOf(before, changed), childOf(after, changed));
+        assertEquals(mapper.valueToTree(adventure), after);
+    }
+
+    @Test
+    void testReadDuringEditSeesLastCommit() {
+        Adventure adventure = new Adventure();
+        adventure.setDays(3);
+        assertEquals(3, snapshots.read(adventure).get("days").asInt());
+
+        try (EditScope tx = Manager.beginEdit(adventure.getId())) {
+            adventure.setDays(7);
+            // The edit holds the write lock of the adventure; the published snapshot is served without it.
+            assertEquals(3, snapshots.read(adventure).get("days").asInt());
+        }
+
+        assertEquals(7, snapshots.read(adventure).get("days").asInt());
+    }
+
+    private static JsonNode childOf(JsonNode parent, BaseClass child) {
+        return parent.get("childMap").get(child.getId().toString()).get("child");
+    }
+}
@@ -0,0 +1,46 @@
+package io.hulsbo.resource;
+
+import io.hulsbo.model.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelSweeperTest {
+
+    @Test
+    void testOrphansAreReclaimedOnTheSecondSweepWithTheirChildren() {
+        ModelSweeper sweeper = new ModelSweeper();
+        Adventure adventure = new Adventure();
+        Meal removed = new Meal();
+        Ingredient ingredient = new Ingredient();
+        Meal pinned = new Meal();
+        Manager.pin(pinned);
+        adventure.putChild(removed);
+        removed.putChild(ingredient);
+        adventure.removeChild(removed.getId());
+
+        sweeper.sweep();
+        assertSame(removed, Manager.getBaseClass(removed.getId()));
+
+        sweeper.sweep();
+        assertNull(Manager.getBaseClass(removed.getId()));
+        assertNull(Manager.getBaseClass(ingredient.getId()));
+        assertSame(pinned, Manager.getBaseClass(pinned.getId()));
+        assertSame(adventure, Manager.getBaseClass(adventure.getId()));
+        assertTrue(sweeper.getStats().getReclaimed().get("Meal") >= 1);
+        assertTrue(sweeper.getStats().getReclaimed().get("Ingredient") >= 1);
+    }
+
+    @Test
+    void testOrphanAddedToAParentIsKept() {
+        ModelSweeper sweeper = new ModelSweeper();
+        Adventure adventure = new Adventure();
+        Meal meal = new Meal();
+
+        sweeper.sweep();
+        adventure.putChild(meal);
+        sweeper.sweep();
+
+        assertSame(meal, Manager.getBaseClass(meal.getId()));
+    }
+}
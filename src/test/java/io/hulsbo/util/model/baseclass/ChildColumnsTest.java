@@ -0,0 +1,113 @@
+package io.hulsbo.util.model.baseclass;
+
+import io.hulsbo.model.Ingredient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChildColumnsTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private static Ingredient ingredient(double protein, double fat) {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setNutrientRatio("protein", protein);
+        ingredient.setNutrientRatio("fat", fat);
+        return ingredient;
+    }
+
+    @Test
+    void testWeightedSumMatchesMapAggregation() {
+        ChildWrapper first = new ChildWrapper(ingredient(0.2, 0.8), 0.25, 50.0);
+        ChildWrapper second = new ChildWrapper(ingredient(0.6, 0.1), 0.75, 150.0);
+        ChildColumns columns = new ChildColumns();
+        columns.rebuild(List.of(first, second));
+
+        NutrientsMap sum = new NutrientsMap();
+        columns.weightedSum(sum);
+
+        assertEquals(0.25 * 0.2 + 0.75 * 0.6, sum.get(Nutrient.PROTEIN), TOLERANCE);
+        assertEquals(0.25 * 0.8 + 0.75 * 0.1, sum.get(Nutrient.FAT), TOLERANCE);
+        assertEquals(0.0, sum.get(Nutrient.CARBS), TOLERANCE);
+    }
+
+    @Test
+    void testUpdateRefreshesOnlyItsRow() {
+        Ingredient changing = ingredient(0.5, 0.5);
+        ChildWrapper first = new ChildWrapper(ingredient(1.0, 0.0), 0.5);
+        ChildWrapper second = new ChildWrapper(changing, 0.5);
+        ChildColumns columns = new ChildColumns();
+        columns.rebuild(List.of(first, second));
+
+        changing.setNutrientRatio("fat", 0.0);
+        second.setWeightUnits(FixedPoint.toUnits(0.4));
+        // The row keeps the last aggregated values until it is updated.
+        NutrientsMap stale = new NutrientsMap();
+        columns.weightedSum(stale);
+        assertEquals(0.25, stale.get(Nutrient.FAT), TOLERANCE);
+        columns.update(columns.rowOf(changing));
+
+        NutrientsMap sum = new NutrientsMap();
+        columns.weightedSum(sum);
+        assertEquals(0.0, sum.get(Nutrient.FAT), TOLERANCE);
+        assertEquals((0.5 * 1.0 + 0.4 * 0.5) / 0.9, sum.get(Nutrient.PROTEIN), TOLERANCE);
+    }
+
+    @Test
+    void testRebuildGrowsAndShrinks() {
+        ChildColumns columns = new ChildColumns();
+        ChildWrapper[] wrappers = new ChildWrapper[200];
+        for (int i = 0; i < wrappers.length; i++) {
+            wrappers[i] = new ChildWrapper(ingredient(1.0, 0.0), 1.0 / wrappers.length);
+        }
+        columns.rebuild(List.of(wrappers));
+        NutrientsMap sum = new NutrientsMap();
+        columns.weightedSum(sum);
+        assertEquals(200, columns.size());
+        assertEquals(1.0, sum.get(Nutrient.PROTEIN), TOLERANCE);
+
+        columns.rebuild(List.of(wrappers[0]));
+        columns.weightedSum(sum);
+        assertEquals(1, columns.size());
+        // Weights are normalized by their total, so a lone child makes up the whole.
+        assertEquals(1.0, sum.get(Nutrient.PROTEIN), TOLERANCE);
+    }
+
+    @Test
+    void testApplyMatchesFullResum() {
+        Ingredient changing = ingredient(0.5, 0.5);
+        ChildWrapper first = new ChildWrapper(ingredient(1.0, 0.0), 0.5);
+        ChildWrapper second = new ChildWrapper(changing, 0.5);
+        ChildColumns columns = new ChildColumns();
+        columns.rebuild(List.of(first, second));
+        columns.weightedSum(new NutrientsMap());
+
+        changing.setNutrientRatio("fat", 0.0);
+        second.setWeightUnits(FixedPoint.toUnits(1.5));
+        columns.apply(columns.rowOf(changing));
+        NutrientsMap incremental = new NutrientsMap();
+        columns.writeAverage(incremental);
+        NutrientsMap full = new NutrientsMap();
+        columns.weightedSum(full);
+
+        assertEquals(full.get(Nutrient.PROTEIN), incremental.get(Nutrient.PROTEIN), TOLERANCE);
+        assertEquals(full.get(Nutrient.FAT), incremental.get(Nutrient.FAT), TOLERANCE);
+        assertEquals((0.5 * 1.0 + 1.5 * 0.5) / 2.0, full.get(Nutrient.PROTEIN), TOLERANCE);
+    }
+
+    @Test
+    void testRowsAreFoundByChildHandle() {
+        Ingredient first = ingredient(1.0, 0.0);
+        Ingredient second = ingredient(0.0, 1.0);
+        Ingredient outsider = ingredient(0.5, 0.5);
+        ChildColumns columns = new ChildColumns();
+        columns.rebuild(List.of(new ChildWrapper(first, 0.5), new ChildWrapper(second, 0.5)));
+
+        assertEquals(0, columns.rowOf(first));
+        assertEquals(1, columns.rowOf(second));
+        assertSame(second, columns.childAt(1));
+        assertEquals(-1, columns.rowOf(outsider));
+    }
+}
@@ -0,0 +1,18 @@
+package io.hulsbo.util.model.baseclass;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FixedPointTest {
+
+    @Test
+    void testDecimalConversionIsExact() {
+        assertEquals(123_400_000L, FixedPoint.toUnits(new BigDecimal("0.1234")));
+        assertEquals(FixedPoint.ONE, FixedPoint.toUnits(new BigDecimal("1.0000")));
+        assertEquals(new BigDecimal("0.1235"), FixedPoint.toDecimal(123_450_000L, 4));
+        assertEquals(new BigDecimal("0.0000"), FixedPoint.toDecimal(0L, 4));
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -201,4 +202,63 @@ public class NutrientsMapTest {
             nutrientsMap.clear();
         });
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testEnumAccessorsShareStateWithMapView() {
+        nutrientsMap.set(Nutrient.PROTEIN, 0.3);
+        nutrientsMap.put("fat", 0.2);
+
+        assertEquals(0.3, nutrientsMap.get("protein"), TOLERANCE);
+        assertEquals(0.2, nutrientsMap.get(Nutrient.FAT), TOLERANCE);
+        assertEquals(0.5, nutrientsMap.sum(), TOLERANCE);
+        assertNull(nutrientsMap.get("vitamin_c"));
+        assertFalse(nutrientsMap.containsKey("vitamin_c"));
+        assertEquals(List.of(NutrientsMap.NUTRIENTS), List.copyOf(nutrientsMap.keySet()));
+    }
+
+    @Test
+    void testRunningSumFollowsEveryWrite() {
+        nutrientsMap.put("protein", 0.1);
+        nutrientsMap.internalPut("fat", 0.2);
+        nutrientsMap.set(Nutrient.CARBS, 0.3);
+        assertEquals(0.6, nutrientsMap.sum(), TOLERANCE);
+
+        for (int i = 0; i < 10_000; i++) {
+            nutrientsMap.set(Nutrient.WATER, 0.00001 * (i % 7));
+            nutrientsMap.put("salt", i % 2 == 0 ? 0.0001 : 0.0003);
+        }
+        double exact = 0.0;
+        for (double value : nutrientsMap.values()) {
+            exact += value;
+        }
+        assertEquals(exact, nutrientsMap.sum(), 1e-15);
+
+        nutrientsMap.normalizeRatios();
+        assertEquals(1.0, nutrientsMap.sum(), TOLERANCE);
+
+        nutrientsMap.reset();
+        assertEquals(0.0, nutrientsMap.sum(), 0.0);
+    }
+
+    @Test
+    void testMicronutrientsAreSparseAndOutsideTheSum() {
+        int iron = NutrientRegistry.register("iron");
+        nutrientsMap.put("protein", 1.0);
+        assertEquals(6, nutrientsMap.size());
+        assertNull(nutrientsMap.get("iron"));
+
+        nutrientsMap.setMicronutrient(iron, 0.0001);
+        assertEquals(7, nutrientsMap.size());
+        assertEquals(0.0001, nutrientsMap.get("iron"), TOLERANCE);
+        assertEquals(1.0, nutrientsMap.sum(), TOLERANCE);
+        assertEquals(Map.of("iron", 0.0001), nutrientsMap.getMicronutrients());
+        assertThrows(IllegalArgumentException.class, () -> nutrientsMap.put("iron", 0.1));
+        assertThrows(IllegalArgumentException.class, () -> nutrientsMap.setMicronutrient(Nutrient.FAT.ordinal(), 0.1));
+
+        NutrientsMap parent = new NutrientsMap();
+        parent.addMicronutrientsWeighted(nutrientsMap, 0.5);
+        assertEquals(0.00005, parent.getMicronutrient(iron), TOLERANCE);
+        parent.resetMicronutrients();
+        assertFalse(parent.hasMicronutrients());
+    }
+}